@@ -162,6 +162,10 @@ public final class GameActivity extends AppCompatActivity {
         if (webSocket != null) {
             webSocket.disconnect(WebSocketCloseCode.AWAY);
         }
+        // Stop anything the game is still doing in the background
+        if (game != null) {
+            game.close();
+        }
         Log.v(TAG, "Destroyed");
     }
 
@@ -305,6 +309,10 @@ public final class GameActivity extends AppCompatActivity {
                 // You need to fill this in to load the game progress into the game variable
                 // Initialize the game instance variable with an instance of the Game subclass appropriate for the mode
                 String mode = message.get("mode").getAsString();
+                if (game != null) {
+                    // A reconnect sends the full state again, which replaces the old game
+                    game.close();
+                }
                 if (mode.equals("area")) {
                     game = new AreaGame(myEmail, map, webSocket, message, this);
                 } else if (mode.equals("target")) {
@@ -14,19 +14,41 @@ import static android.graphics.Color.BLACK;
  * getXIndex: gets the X index of the cell containing a specified location.
  * getYCells: gets number of cells between the south and north boundaries.
  * getYIndex: gets the Y index of the cell containing a specified location.
+ * <p>
+ * The grid's size, cell counts, cell intervals, and boundary arrays depend only on the constructor's
+ * arguments, so they are computed once there. Cell lookups are then arithmetic on those values and don't
+ * allocate.
  */
 public class AreaDivider {
     // initialize private variables to hold values that are to be set through the constructor
     /** North boundary of the grid. */
-    private double north;
+    private final double north;
     /** East boundary of the grid. */
-    private double east;
+    private final double east;
     /** South boundary of the grid. */
-    private double south;
+    private final double south;
     /** West boundary of the grid. */
-    private double west;
+    private final double west;
     /** Desired cell size. */
-    private int cellSize;
+    private final int cellSize;
+    /** Cosine of the south boundary's latitude, which scales X distances from the origin. */
+    private final double cosSouth;
+    /** Distance across the grid in the X direction, in meters. */
+    private final double xDistance;
+    /** Distance across the grid in the Y direction, in meters. */
+    private final double yDistance;
+    /** Number of cells in the X direction. */
+    private final int xCells;
+    /** Number of cells in the Y direction. */
+    private final int yCells;
+    /** Width of a cell in the X direction, in meters. */
+    private final double xInterval;
+    /** Height of a cell in the Y direction, in meters. */
+    private final double yInterval;
+    /** Longitudes of the cell boundaries, from west to east, or null if the configuration is invalid. */
+    private final double[] xBounds;
+    /** Latitudes of the cell boundaries, from south to north, or null if the configuration is invalid. */
+    private final double[] yBounds;
 
     /**
      * Constructor method for creating the grid object.
@@ -46,6 +68,40 @@ public class AreaDivider {
         south = setSouth;
         west = setWest;
         cellSize = setCellSize;
+
+        // compute the grid geometry once (same expressions as the getters used to evaluate on every call)
+        cosSouth = Math.cos(GeoMath.DEG_TO_RAD * south);
+        xDistance = LatLngUtils.distance(north, west, north, east);
+        yDistance = LatLngUtils.distance(south, west, north, west);
+        xCells = (int) Math.ceil(xDistance / (double) cellSize);
+        yCells = (int) Math.ceil(yDistance / (double) cellSize);
+        xInterval = xDistance / xCells;
+        yInterval = yDistance / yCells;
+        // an invalid configuration can ask for a negative or enormous number of cells, so only a valid one
+        // gets its boundaries up front
+        if (isValid()) {
+            xBounds = computeBounds(west, east - west, xCells);
+            yBounds = computeBounds(south, north - south, yCells);
+        } else {
+            xBounds = null;
+            yBounds = null;
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: computes evenly spaced cell boundaries along one direction.
+     * @param start the coordinate of the first boundary
+     * @param range the distance in degrees from the first boundary to the last
+     * @param cells the number of cells
+     * @return the coordinates of the cells + 1 boundaries
+     */
+    private static double[] computeBounds(final double start, final double range, final int cells) {
+        double interval = range / (double) cells;
+        double[] bounds = new double[cells + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = start + interval * i;
+        }
+        return bounds;
     }
 
     /**
@@ -68,22 +124,8 @@ public class AreaDivider {
      * @return double[] of {X, Y} distances
      */
     public double[] getGridDistances() {
-        // create LatLng objects for corners
-            // Southwest corner of the grid.
-        LatLng sw = new LatLng(south, west);
-            // Northwest corner of the grid.
-        LatLng nw = new LatLng(north, west);
-            // Northeast corner of the grid.
-        LatLng ne = new LatLng(north, east);
-
-        // store corner objects in a LatLng[] array
-        LatLng[] gridCorners = {sw, nw, ne};
-
-        // compute and store X [0] and Y [1] distances
-        double[] gridDistances = new double[2];
-        gridDistances[0] = LatLngUtils.distance(gridCorners[1], gridCorners[2]);
-        gridDistances[1] = LatLngUtils.distance(gridCorners[0], gridCorners[1]);
-        return gridDistances;
+        // return a new array so callers can't change the grid's distances
+        return new double[] {xDistance, yDistance};
     }
 
     /**
@@ -98,27 +140,45 @@ public class AreaDivider {
 
         // gets distance in the X direction
         if (component == 'x') {
-            distance = LatLngUtils.distance(south, location.longitude,
-                                            south, west);
+            distance = xFromOrigin(location.longitude);
         }
         // get distance in the Y direction
         if (component == 'y') {
-            distance = LatLngUtils.distance(location.latitude, west,
-                                            south, west);
+            distance = yFromOrigin(location.latitude);
         }
         return distance;
     }
 
+    /**
+     * HELPER FUNCTION: gets the distance in the X direction from the west boundary, along the south boundary.
+     * <p>
+     * Equal to LatLngUtils.distance(south, longitude, south, west): the latitude difference is zero, and the
+     * square root of a square is the absolute value exactly.
+     * @param longitude the longitude of the point of interest
+     * @return the distance in meters
+     */
+    private double xFromOrigin(final double longitude) {
+        return Math.abs(GeoMath.LNG_DISTANCE_SCALE * (longitude - west) * cosSouth);
+    }
+
+    /**
+     * HELPER FUNCTION: gets the distance in the Y direction from the south boundary.
+     * <p>
+     * Equal to LatLngUtils.distance(latitude, west, south, west), since the longitude difference is zero.
+     * @param latitude the latitude of the point of interest
+     * @return the distance in meters
+     */
+    private double yFromOrigin(final double latitude) {
+        return Math.abs(GeoMath.LAT_DISTANCE_SCALE * (latitude - south));
+    }
+
 
     /**
      * gets number of cells between the west and east boundaries.
      * @return the number of cells in the X direction
      */
     public int getXCells() {
-        // get distance in the X direction
-        double xDistance = this.getGridDistances()[0];
-        // round to nearest integer greater than the ratio of distance to cell size
-        return (int) Math.ceil(xDistance / (double) cellSize);
+        return xCells;
     }
 
     /**
@@ -126,10 +186,7 @@ public class AreaDivider {
      * @return the number of cells in the Y direction
      */
     public int getYCells() {
-        // get distance in the Y direction
-        double yDistance = this.getGridDistances()[1];
-        // round to nearest integer greater than the ratio of distance to cell size
-        return (int) Math.ceil(yDistance / (double) cellSize);
+        return yCells;
     }
 
     /**
@@ -138,19 +195,22 @@ public class AreaDivider {
      * @return the X index of the cell containing the lat-long point
      */
     public int getXIndex(final com.google.android.gms.maps.model.LatLng location) {
-        if (location.longitude >= west && location.longitude <= east) {
-            // get number of cells and distance in X direction (as an int)
-            double xDistance = this.getGridDistances()[0];
-            int numXCells = this.getXCells();
-
-            // get interval between boundaries for cells in the X direction
-            double interval = xDistance / numXCells;
+        return xIndexOf(location.latitude, location.longitude);
+    }
 
+    /**
+     * HELPER FUNCTION: gets the X index of the cell containing a location given as primitive coordinates.
+     * @param latitude the location's latitude
+     * @param longitude the location's longitude
+     * @return the X index of the cell containing the point, or -1 if it is outside the grid's longitudes
+     */
+    private int xIndexOf(final double latitude, final double longitude) {
+        if (longitude >= west && longitude <= east) {
             // bin the location longitude into an X interval
-            if (interval >= 1) {
-                return (int) Math.floor(getUniDirection('x', location) / interval);
-            } else if (interval > 0 && interval < 1) {
-                return (int) Math.floor(getUniDirection('y', location) * interval);
+            if (xInterval >= 1) {
+                return (int) Math.floor(xFromOrigin(longitude) / xInterval);
+            } else if (xInterval > 0 && xInterval < 1) {
+                return (int) Math.floor(yFromOrigin(latitude) * xInterval);
             }
         }
         return -1;
@@ -162,19 +222,21 @@ public class AreaDivider {
      * @return the Y index of the cell containing the lat-long point
      */
     public int getYIndex(final com.google.android.gms.maps.model.LatLng location) {
-        if (location.latitude >= south && location.latitude <= north) {
-            // get number of cells and distance in Y direction (as an int)
-            double yDistance = this.getGridDistances()[1];
-            int numYCells = this.getYCells();
-
-            // get interval between boundaries for cells in the Y direction
-            double interval = yDistance / numYCells;
+        return yIndexOf(location.latitude);
+    }
 
+    /**
+     * HELPER FUNCTION: gets the Y index of the cell containing a latitude.
+     * @param latitude the location's latitude
+     * @return the Y index of the cell containing the point, or -1 if it is outside the grid's latitudes
+     */
+    private int yIndexOf(final double latitude) {
+        if (latitude >= south && latitude <= north) {
             // bin the location latitude into an Y interval
-            if (interval >= 1) {
-                return (int) Math.floor(getUniDirection('y', location) / interval);
-            } else if (interval > 0 && interval < 1) {
-                return (int) Math.floor(getUniDirection('y', location) * interval);
+            if (yInterval >= 1) {
+                return (int) Math.floor(yFromOrigin(latitude) / yInterval);
+            } else if (yInterval > 0 && yInterval < 1) {
+                return (int) Math.floor(yFromOrigin(latitude) * yInterval);
             }
         }
         return -1;
@@ -185,33 +247,33 @@ public class AreaDivider {
      * @return 2D array {2}{X, Y} of X and Y boundaries
      */
     public double[][] getGridBounds() {
-        // get number of cells and distance in X direction
-        double xRange = east - west;
-        int numXCells = this.getXCells();
-
-        // get number of cells and distance in Y direction
-        double yRange = north - south;
-        int numYCells = this.getYCells();
-
-        // generate boundaries for cells in the X direction
-        double xInterval = xRange / (double) numXCells;
-        double[] xBounds = new double[numXCells + 1];
-        for (int i = 0; i < xBounds.length; i++) {
-            xBounds[i] = west + xInterval * i;
-        }
+        // return copies so callers can't change the grid's boundaries
+        double[][] gridBounds = new double[2][];
+        gridBounds[0] = xBoundaries().clone();
+        gridBounds[1] = yBoundaries().clone();
+        return gridBounds;
+    }
 
-        // generate boundaries for cells in the Y direction
-        double yInterval = yRange / (double) numYCells;
-        double[] yBounds = new double[numYCells + 1];
-        for (int i = 0; i < yBounds.length; i++) {
-            yBounds[i] = south + yInterval * i;
+    /**
+     * HELPER FUNCTION: gets the X boundaries without copying them.
+     * @return the longitudes of the cell boundaries, from west to east
+     */
+    private double[] xBoundaries() {
+        if (xBounds != null) {
+            return xBounds;
         }
+        return computeBounds(west, east - west, xCells);
+    }
 
-        // format and return output
-        double[][] gridBounds = new double[2][];
-        gridBounds[0] = xBounds;
-        gridBounds[1] = yBounds;
-        return gridBounds;
+    /**
+     * HELPER FUNCTION: gets the Y boundaries without copying them.
+     * @return the latitudes of the cell boundaries, from south to north
+     */
+    private double[] yBoundaries() {
+        if (yBounds != null) {
+            return yBounds;
+        }
+        return computeBounds(south, north - south, yCells);
     }
 
     /**
@@ -224,15 +286,16 @@ public class AreaDivider {
                                                                         final int y) {
         if (x > -1 && y > -1) {
             // get grid boundaries
-            double[][] gridBounds = this.getGridBounds();
+            double[] xBoundaries = xBoundaries();
+            double[] yBoundaries = yBoundaries();
 
             // get west and east boundaries (X direction / longitude)
-            double westBound = gridBounds[0][x];
-            double eastBound = gridBounds[0][x + 1];
+            double westBound = xBoundaries[x];
+            double eastBound = xBoundaries[x + 1];
 
             // get south and north boundaries (Y direction / latitude)
-            double southBound = gridBounds[1][y];
-            double northBound = gridBounds[1][y + 1];
+            double southBound = yBoundaries[y];
+            double northBound = yBoundaries[y + 1];
 
             // construct LatLng object for southwest & northeast corners of the specified cell
             LatLng southWest = new LatLng(southBound, westBound);
@@ -272,7 +335,7 @@ public class AreaDivider {
         // [0][1]
         // [x][y]
         // [longitude][latitude]
-        double[][] gridBounds = this.getGridBounds();
+        double[][] gridBounds = {xBoundaries(), yBoundaries()};
 
         // draw lines in the X direction
         for (int i = 0; i < gridBounds[1].length; i++) {
@@ -7,6 +7,8 @@ import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
@@ -32,12 +34,41 @@ import static edu.illinois.cs.cs125.spring2020.mp.logic.TeamID.OBSERVER;
 public final class AreaGame extends Game {
     // You will probably want some instance variables to keep track of the game state
     // (similar to the area mode gameplay logic you previously wrote in GameActivity)
+    /**
+     * Number of grid lines above which the grid is drawn as two combined polylines rather than one per line,
+     * since hundreds of separate polylines are slow to add and draw.
+     */
+    private static final int COMBINED_GRID_LINES = 64;
+    /** Most map tiles kept in memory when the grid is drawn as tiles. */
+    private static final int TILE_CACHE_SIZE = 256;
+    /** Number of cells around the screen drawn when only the part of the grid near the screen is drawn. */
+    private static final int VIEWPORT_MARGIN = 2;
+    /** Most cells drawn as polygons at once when only the part of the grid near the screen is drawn. */
+    private static final int VIEWPORT_CELLS = 1000;
     /** AreaDivider instance. */
     private AreaDivider ad;
-    /** Stores cells and occupying player looked up by server ID. */
-    private int[][] capturedCells;
-    /** Map of player emails to their paths (visited cells). */
-    private Map<String, List<int[]>> playerPaths = new HashMap<>();
+    /** Cell IDs and ranges for the divider's grid. */
+    private AreaGrid grid;
+    /**
+     * Team owning each cell, indexed by cell ID (see AreaGrid.cellId). Shared with tiles or viewport,
+     * whichever is used, which must be told after each change.
+     */
+    private CellOwnership capturedCells;
+    /** Map of player emails to their paths (IDs of visited cells, in order). */
+    private Map<String, IntList> playerPaths = new HashMap<>();
+    /**
+     * Draws the grid and captured cells as map tiles, or null if they are drawn as polylines and polygons.
+     * Tiles are used when the area_use_tiles resource is set and the grid has more cells than the area_tile_cells
+     * resource.
+     */
+    private AreaTileProvider tiles;
+    /** The map overlay showing the tiles, or null if tiles aren't used. */
+    private TileOverlay tileOverlay;
+    /**
+     * Draws the part of the grid near the screen, or null if the whole grid is drawn (or tiles are used).
+     * Used when the grid has more cells than the area_viewport_cells resource, unless tiles are used.
+     */
+    private AreaViewport viewport;
 
     /**
      * Creates a game in area mode.
@@ -63,12 +94,23 @@ public final class AreaGame extends Game {
 
         /* Render the grid */
         ad = new AreaDivider(north, east, south, west, cellSize);
-        ad.renderGrid(map);
-        capturedCells = new int[ad.getYCells()][ad.getXCells()];
+        grid = new AreaGrid(ad);
+        capturedCells = new CellOwnership(grid.getXCells(), grid.getYCells());
+        int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
+        if (getContext().getResources().getBoolean(R.bool.area_use_tiles)
+                && grid.getCellCount() > getContext().getResources().getInteger(R.integer.area_tile_cells)) {
+            tiles = new AreaTileProvider(grid, capturedCells, colors, TILE_CACHE_SIZE);
+        } else if (grid.getCellCount() > getContext().getResources().getInteger(R.integer.area_viewport_cells)) {
+            viewport = new AreaViewport(map, grid, capturedCells, colors, VIEWPORT_MARGIN, VIEWPORT_CELLS,
+                    getContext().getResources().getBoolean(R.bool.area_merge_territories));
+        } else if (grid.getXCells() + grid.getYCells() + 2 > COMBINED_GRID_LINES) {
+            grid.renderCombinedGrid(map);
+        } else {
+            ad.renderGrid(map);
+        }
 
         /* Load cell information and update map */
         if (fullState.getAsJsonArray("cells").size() != 0) {
-            int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
             for (JsonElement c : fullState.getAsJsonArray("cells")) {
                 JsonObject cell = c.getAsJsonObject();
 
@@ -78,13 +120,27 @@ public final class AreaGame extends Game {
                 int team = cell.get("team").getAsInt();
 
                 /* Update cell ownership */
-                capturedCells[y][x] = team;
+                int old = capturedCells.set(x, y, team);
 
                 /* Update the google map */
-                int teamColor = colors[team];
-                drawPolygon(cell.get("x").getAsInt(), cell.get("y").getAsInt(), teamColor);
+                if (tiles != null) {
+                    tiles.ownerChanged(x, y, old);
+                } else if (viewport != null) {
+                    viewport.ownerChanged(x, y, old);
+                } else {
+                    int teamColor = colors[team];
+                    drawPolygon(cell.get("x").getAsInt(), cell.get("y").getAsInt(), teamColor);
+                }
             }
         }
+        if (tiles != null) {
+            // Added after loading the cells so no tiles are drawn without them
+            tileOverlay = map.addTileOverlay(new TileOverlayOptions().tileProvider(tiles));
+        }
+        if (viewport != null) {
+            map.setOnCameraIdleListener(viewport);
+            viewport.onCameraIdle();
+        }
 
         /* Load paths of all players */
         if (fullState.getAsJsonArray("players").size() != 0) {
@@ -92,8 +148,8 @@ public final class AreaGame extends Game {
                 JsonObject player = p.getAsJsonObject(); // individual player in the players array
                 String playerEmail = player.get("email").getAsString(); // identifying email
 
-                /* Create an ArrayList to hold the cells visited by the player, in order */
-                ArrayList<int[]> path = new ArrayList<>();
+                /* Create a list to hold the IDs of the cells visited by the player, in order */
+                IntList path = new IntList();
                 playerPaths.put(playerEmail, path); // add path to map (key: email, value: path array)
 
                 /* Visit each captured cell in the player's path */
@@ -101,13 +157,12 @@ public final class AreaGame extends Game {
                     for (JsonElement c : player.getAsJsonArray("path")) {
                         JsonObject cell = c.getAsJsonObject();
 
-                        /* Store y and x: y in index 0, x in index 1 */
+                        /* Pack y and x into the cell's ID */
                         int y = cell.get("y").getAsInt();
                         int x = cell.get("x").getAsInt();
-                        int[] coordinate = new int[]{y, x};
 
-                        // Add coordinate to player path, using hash map lookup
-                        path.add(coordinate);
+                        // Add the cell to the player path, using hash map lookup
+                        path.add(grid.cellId(x, y));
                     }
                 }
             }
@@ -131,28 +186,28 @@ public final class AreaGame extends Game {
         super.locationUpdated(location);
         int team = super.getMyTeam();
         String playerEmail = super.getEmail();
-        List<int[]> captures = playerPaths.get(playerEmail);
+        IntList captures = playerPaths.get(playerEmail);
 
-        /* Get current location */
+        /* Get current location, proceeding only if it is within the bounds of the game */
         int x = ad.getXIndex(location);
         int y = ad.getYIndex(location);
-
-        /* Proceed only if this location is within the bounds of the game */
-        if (ad.getCellBounds(x, y) == null) {
+        if (!grid.isInGrid(x, y)) {
             return;
         }
+        int cell = grid.cellId(x, y);
 
         /* Proceed only if this cell has not been captured */
-        if (capturedCells[y][x] != OBSERVER) {
+        if (capturedCells.get(cell) != OBSERVER) {
             return;
         }
 
         /* Get last visited location, if it exists */
         int lx = -1;
         int ly = -1;
-        if (captures != null && captures.size() > 0) {
-            lx = captures.get(captures.size() - 1)[1];
-            ly = captures.get(captures.size() - 1)[0];
+        if (captures != null && !captures.isEmpty()) {
+            int last = captures.get(captures.size() - 1);
+            lx = grid.cellX(last);
+            ly = grid.cellY(last);
         }
 
         /* Proceed only if this cell shares a side with the last visited cell */
@@ -196,6 +251,21 @@ public final class AreaGame extends Game {
         }
     }
 
+    /**
+     * Detaches the viewport or tile overlay, if either is used, so a replacement game starts with a clean map.
+     */
+    @Override
+    public void close() {
+        if (viewport != null) {
+            getMap().setOnCameraIdleListener(null);
+            viewport.remove();
+        }
+        if (tileOverlay != null) {
+            tileOverlay.remove();
+        }
+        super.close();
+    }
+
     /**
      * helper function that checks two locations share a cell side.
      * @param x1 first x
@@ -270,16 +340,25 @@ public final class AreaGame extends Game {
      */
     private void captureUpdates(final String email, final int y, final int x, final int team) {
         // Get the specified player's path from the players/paths map
-        List<int[]> path = playerPaths.get(email);
+        IntList path = playerPaths.get(email);
 
         /* Update captured cell's team ownership */
-        capturedCells[y][x] = team;
+        int cell = grid.cellId(x, y);
+        int old = capturedCells.set(cell, team);
 
         /* Update user's path */
-        int[] newCoordinate = new int[]{y, x};
-        path.add(newCoordinate);
+        path.add(cell);
 
         /* Update map */
+        if (tiles != null) {
+            tiles.ownerChanged(x, y, old);
+            tileOverlay.clearTileCache();
+            return;
+        }
+        if (viewport != null) {
+            viewport.ownerChanged(x, y, old);
+            return;
+        }
         int[] colors = getContext().getResources().getIntArray(R.array.team_colors);
         int teamColor = colors[team];
         drawPolygon(x, y, teamColor);
@@ -287,22 +366,14 @@ public final class AreaGame extends Game {
 
     /**
      * Gets a team's score in this area mode game.
-     * @param teamId the team ID
+     * @param teamId the team ID, or TeamID.OBSERVER to count uncaptured cells
      * @return the number of cells owned by the team
      */
     @Override
     public int getTeamScore(final int teamId) {
         // Find how many cell are currently owned by the specified team
-        // Iterate through captured cells array
-        int total = 0;
-        for (int i = 0; i < capturedCells.length; i++) {
-            for (int j = 0; j < capturedCells[i].length; j++) {
-                if (capturedCells[i][j] == teamId) {
-                    total++;
-                }
-            }
-        }
-        return total;
+        // (CellOwnership counts cells as they change hands, so no need to look at every cell)
+        return capturedCells.count(teamId);
     }
 
 }
@@ -0,0 +1,363 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static android.graphics.Color.BLACK;
+
+/**
+ * Holds an AreaDivider's cell boundaries for the lookups that drawing and scoring large grids need.
+ * <p>
+ * The boundaries are copied from the divider once, through its public getters, so everything here is array
+ * arithmetic: cell IDs that pack an X and Y index into one int, the range of cells overlapping a box, single
+ * cell edges, and the paths and outlines drawn along the grid lines. None of it allocates except the methods
+ * that build map objects.
+ */
+public final class AreaGrid {
+
+    /** Length of the range array filled by cellsIntersecting. */
+    private static final int RANGE_LENGTH = 4;
+
+    /** Width of the grid lines, matching AreaDivider.renderGrid. */
+    private static final int LINE_THICKNESS = 12;
+
+    /** Number of cells in the X direction. */
+    private final int xCells;
+
+    /** Number of cells in the Y direction. */
+    private final int yCells;
+
+    /** Longitudes of the cell boundaries, from west to east. */
+    private final double[] xBounds;
+
+    /** Latitudes of the cell boundaries, from south to north. */
+    private final double[] yBounds;
+
+    /**
+     * Creates a grid from a valid area divider.
+     * @param setDivider the divider whose cells to use
+     */
+    public AreaGrid(final AreaDivider setDivider) {
+        xCells = setDivider.getXCells();
+        yCells = setDivider.getYCells();
+        double[][] gridBounds = setDivider.getGridBounds();
+        xBounds = gridBounds[0];
+        yBounds = gridBounds[1];
+    }
+
+    /**
+     * Gets the number of cells in the X direction.
+     * @return the number of cells between the west and east boundaries
+     */
+    public int getXCells() {
+        return xCells;
+    }
+
+    /**
+     * Gets the number of cells in the Y direction.
+     * @return the number of cells between the south and north boundaries
+     */
+    public int getYCells() {
+        return yCells;
+    }
+
+    /**
+     * Gets the number of cells in the grid, which is one more than the largest cell ID.
+     * @return the total number of cells
+     */
+    public int getCellCount() {
+        return xCells * yCells;
+    }
+
+    /**
+     * Packs a cell's X and Y indexes into its ID.
+     * <p>
+     * Cell IDs number the cells row by row from the southwest corner: the cell at X index x and Y index y has
+     * ID y * getXCells() + x, so one int can be stored in primitive arrays and lists.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the cell's ID
+     */
+    public int cellId(final int x, final int y) {
+        return y * xCells + x;
+    }
+
+    /**
+     * Gets a cell's X index from its ID.
+     * @param cellId the cell's ID
+     * @return the cell's X index
+     */
+    public int cellX(final int cellId) {
+        return cellId % xCells;
+    }
+
+    /**
+     * Gets a cell's Y index from its ID.
+     * @param cellId the cell's ID
+     * @return the cell's Y index
+     */
+    public int cellY(final int cellId) {
+        return cellId / xCells;
+    }
+
+    /**
+     * Determines whether a cell index is inside the grid.
+     * <p>
+     * This is the same test as AreaDivider.getCellBounds returning a non-null value without throwing, but
+     * creates no objects.
+     * @param x the cell's X coordinate
+     * @param y the cell's Y coordinate
+     * @return whether the grid has a cell at those coordinates
+     */
+    public boolean isInGrid(final int x, final int y) {
+        return x > -1 && y > -1 && x < xCells && y < yCells;
+    }
+
+    /**
+     * Finds the range of cells that overlap a bounding box, such as the visible region of the map.
+     * <p>
+     * The range is computed from the box's edges in constant time rather than by checking every cell. Cells
+     * that only touch the box along an edge are included. If the box crosses the antimeridian, the range
+     * covers the cells overlapping either side of it.
+     * @param bounds the bounding box
+     * @param range array to receive the range as {minimum X index, minimum Y index, maximum X index,
+     *              maximum Y index}, all inclusive (at least 4 long); all -1 if no cells overlap
+     * @return how many cells are in the range
+     */
+    public int cellsIntersecting(final LatLngBounds bounds, final int[] range) {
+        return cellsIntersecting(bounds.southwest.latitude, bounds.southwest.longitude,
+                bounds.northeast.latitude, bounds.northeast.longitude, range);
+    }
+
+    /**
+     * Finds the range of cells that overlap a bounding box given by its edges.
+     * <p>
+     * Works like the LatLngBounds version, but the edges are used as given, so a box can reach exactly to the
+     * antimeridian: an east edge of 180 stays 180 instead of wrapping around to -180 as it would in a LatLng.
+     * The box crosses the antimeridian only if its west edge is east of its east edge.
+     * @param boxSouth the latitude of the box's south edge
+     * @param boxWest the longitude of the box's west edge
+     * @param boxNorth the latitude of the box's north edge
+     * @param boxEast the longitude of the box's east edge
+     * @param range array to receive the range as {minimum X index, minimum Y index, maximum X index,
+     *              maximum Y index}, all inclusive (at least 4 long); all -1 if no cells overlap
+     * @return how many cells are in the range
+     */
+    public int cellsIntersecting(final double boxSouth, final double boxWest,
+                                 final double boxNorth, final double boxEast, final int[] range) {
+        int minX;
+        int maxX;
+        if (boxWest <= boxEast) {
+            minX = firstCellEndingAfter(xBounds, xCells, boxWest);
+            maxX = lastCellStartingBefore(xBounds, xCells, boxEast);
+        } else {
+            // the box wraps around, so it covers everything east of its west edge and west of its east edge
+            minX = firstCellEndingAfter(xBounds, xCells, Double.NEGATIVE_INFINITY);
+            maxX = lastCellStartingBefore(xBounds, xCells, Double.POSITIVE_INFINITY);
+            if (lastCellStartingBefore(xBounds, xCells, boxEast) < 0) {
+                minX = firstCellEndingAfter(xBounds, xCells, boxWest);
+            }
+            if (firstCellEndingAfter(xBounds, xCells, boxWest) >= xCells) {
+                maxX = lastCellStartingBefore(xBounds, xCells, boxEast);
+            }
+        }
+        int minY = firstCellEndingAfter(yBounds, yCells, boxSouth);
+        int maxY = lastCellStartingBefore(yBounds, yCells, boxNorth);
+        if (minX > maxX || minY > maxY) {
+            Arrays.fill(range, 0, RANGE_LENGTH, -1);
+            return 0;
+        }
+        range[0] = minX;
+        range[1] = minY;
+        range[2] = maxX;
+        range[RANGE_LENGTH - 1] = maxY;
+        return (maxX - minX + 1) * (maxY - minY + 1);
+    }
+
+    /**
+     * HELPER FUNCTION: finds the first cell along one direction whose far boundary is at or past a coordinate.
+     * <p>
+     * The position is estimated from the even spacing of the boundaries, then corrected against the boundary
+     * array itself so the result agrees exactly with the cell bounds.
+     * @param bounds the boundary coordinates along the direction
+     * @param cells the number of cells along the direction
+     * @param value the coordinate
+     * @return the index of the cell, or cells if no cell reaches the coordinate
+     */
+    private static int firstCellEndingAfter(final double[] bounds, final int cells, final double value) {
+        int cell = estimateCell(bounds, cells, value);
+        while (cell > 0 && bounds[cell] >= value) {
+            cell--;
+        }
+        while (cell < cells && bounds[cell + 1] < value) {
+            cell++;
+        }
+        return cell;
+    }
+
+    /**
+     * HELPER FUNCTION: finds the last cell along one direction whose near boundary is at or before a coordinate.
+     * @param bounds the boundary coordinates along the direction
+     * @param cells the number of cells along the direction
+     * @param value the coordinate
+     * @return the index of the cell, or -1 if every cell starts after the coordinate
+     */
+    private static int lastCellStartingBefore(final double[] bounds, final int cells, final double value) {
+        int cell = estimateCell(bounds, cells, value);
+        while (cell < cells - 1 && bounds[cell + 1] <= value) {
+            cell++;
+        }
+        while (cell >= 0 && bounds[cell] > value) {
+            cell--;
+        }
+        return cell;
+    }
+
+    /**
+     * HELPER FUNCTION: estimates which cell along one direction contains a coordinate.
+     * @param bounds the boundary coordinates along the direction
+     * @param cells the number of cells along the direction
+     * @param value the coordinate
+     * @return a cell index near the coordinate, clamped to the grid
+     */
+    private static int estimateCell(final double[] bounds, final int cells, final double value) {
+        double estimate = Math.floor((value - bounds[0]) / (bounds[cells] - bounds[0]) * cells);
+        return (int) Math.max(0, Math.min(cells - 1, estimate));
+    }
+
+    /**
+     * Gets the longitude of a cell's west edge.
+     * @param x the cell's X index
+     * @return the west boundary of the cell
+     */
+    public double getCellWest(final int x) {
+        return xBounds[x];
+    }
+
+    /**
+     * Gets the longitude of a cell's east edge.
+     * @param x the cell's X index
+     * @return the east boundary of the cell
+     */
+    public double getCellEast(final int x) {
+        return xBounds[x + 1];
+    }
+
+    /**
+     * Gets the latitude of a cell's south edge.
+     * @param y the cell's Y index
+     * @return the south boundary of the cell
+     */
+    public double getCellSouth(final int y) {
+        return yBounds[y];
+    }
+
+    /**
+     * Gets the latitude of a cell's north edge.
+     * @param y the cell's Y index
+     * @return the north boundary of the cell
+     */
+    public double getCellNorth(final int y) {
+        return yBounds[y + 1];
+    }
+
+    /**
+     * Draws the whole grid to a map as two solid black polylines.
+     * <p>
+     * AreaDivider.renderGrid puts X + Y + 2 polylines on the map, which slows down loading and drawing large
+     * grids. Here all the horizontal lines are one polyline that zig-zags across the grid, stepping to the next
+     * line along the east or west border, and likewise all the vertical lines are one polyline that steps along
+     * the south or north border. Those steps retrace parts of the border, which is drawn anyway, so the grid
+     * looks the same.
+     * @param map the Google map to draw on
+     */
+    public void renderCombinedGrid(final GoogleMap map) {
+        List<LatLng> horizontal = new ArrayList<>();
+        List<LatLng> vertical = new ArrayList<>();
+        gridPaths(0, 0, xCells - 1, yCells - 1, horizontal, vertical);
+        map.addPolyline(new PolylineOptions().addAll(horizontal).color(BLACK).width(LINE_THICKNESS).zIndex(1));
+        map.addPolyline(new PolylineOptions().addAll(vertical).color(BLACK).width(LINE_THICKNESS).zIndex(1));
+    }
+
+    /**
+     * Computes the two zig-zag paths that draw the grid lines around a block of cells (see renderCombinedGrid).
+     * <p>
+     * The horizontal path runs along each boundary between the block's rows, and the block's south and north
+     * edges, alternating west-to-east and east-to-west. The vertical path does the same for the columns,
+     * alternating south-to-north and north-to-south.
+     * @param minX the X index of the block's westernmost cells
+     * @param minY the Y index of the block's southernmost cells
+     * @param maxX the X index of the block's easternmost cells
+     * @param maxY the Y index of the block's northernmost cells
+     * @param horizontal list to receive the points of the horizontal path
+     * @param vertical list to receive the points of the vertical path
+     */
+    public void gridPaths(final int minX, final int minY, final int maxX, final int maxY,
+                          final List<LatLng> horizontal, final List<LatLng> vertical) {
+        double blockWest = xBounds[minX];
+        double blockEast = xBounds[maxX + 1];
+        double blockSouth = yBounds[minY];
+        double blockNorth = yBounds[maxY + 1];
+
+        // lines in the X direction, alternating west-to-east and east-to-west
+        for (int i = minY; i <= maxY + 1; i++) {
+            LatLng westEnd = new LatLng(yBounds[i], blockWest);
+            LatLng eastEnd = new LatLng(yBounds[i], blockEast);
+            if ((i - minY) % 2 == 0) {
+                horizontal.add(westEnd);
+                horizontal.add(eastEnd);
+            } else {
+                horizontal.add(eastEnd);
+                horizontal.add(westEnd);
+            }
+        }
+
+        // lines in the Y direction, alternating south-to-north and north-to-south
+        for (int i = minX; i <= maxX + 1; i++) {
+            LatLng southEnd = new LatLng(blockSouth, xBounds[i]);
+            LatLng northEnd = new LatLng(blockNorth, xBounds[i]);
+            if ((i - minX) % 2 == 0) {
+                vertical.add(southEnd);
+                vertical.add(northEnd);
+            } else {
+                vertical.add(northEnd);
+                vertical.add(southEnd);
+            }
+        }
+    }
+
+    /**
+     * Builds the polygon for an outline traced along the grid lines, such as a territory's.
+     * @param rings the outline's rings as grid corners, X then Y for each, where corner (i, j) is the southwest
+     *              corner of cell (i, j); the first ring is the outer edge and the rest are holes (see
+     *              TerritoryMap.outline)
+     * @return the polygon options, without a fill color
+     */
+    public PolygonOptions outlinePolygon(final List<int[]> rings) {
+        PolygonOptions polygon = new PolygonOptions().addAll(cornerPoints(rings.get(0)));
+        for (int r = 1; r < rings.size(); r++) {
+            polygon.addHole(cornerPoints(rings.get(r)));
+        }
+        return polygon;
+    }
+
+    /**
+     * HELPER FUNCTION: converts a ring of grid corners to map positions.
+     * @param ring the ring's corners, X then Y for each
+     * @return the positions of the corners
+     */
+    private List<LatLng> cornerPoints(final int[] ring) {
+        List<LatLng> points = new ArrayList<>();
+        for (int i = 0; i < ring.length; i += 2) {
+            points.add(new LatLng(yBounds[ring[i + 1]], xBounds[ring[i]]));
+        }
+        return points;
+    }
+}
@@ -0,0 +1,400 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static android.graphics.Color.BLACK;
+
+/**
+ * Draws an area mode game's grid and captured cells as map tiles, for games too large to show as polylines
+ * and one polygon per cell.
+ * <p>
+ * Google Maps requests tiles from this provider on its own background threads, so drawing never blocks the
+ * UI thread. Each tile is drawn once with the cells it covers (found with AreaGrid.cellsIntersecting),
+ * compressed to a PNG, and kept in a least-recently-used cache of a fixed number of tiles. When a cell
+ * changes owner, only the cached tiles covering that cell are dropped; after that, clearing the overlay's tile
+ * cache makes the map ask for its tiles again, and all but the dropped ones come straight from the cache.
+ * <p>
+ * When cells are only a few pixels wide, a tile is filled from an {@link OwnershipQuadtree} level instead of
+ * cell by cell: each node at least MIN_NODE_PIXELS wide gets its dominant team's color (faded if its cells
+ * aren't all owned by that team), so a tile reads a few thousand nodes however many cells it covers. Likewise
+ * only every 2^k-th grid line is drawn, with k the smallest that puts the lines MIN_LINE_SPACING pixels apart,
+ * along with the grid's border.
+ * <p>
+ * Tiles use the usual Web Mercator numbering: at zoom level z the world is 2^z by 2^z tiles, counted east
+ * from the antimeridian and south from the top of the map.
+ */
+public final class AreaTileProvider implements TileProvider {
+
+    /** Width and height of a tile, in pixels. */
+    static final int TILE_SIZE = 256;
+
+    /** Highest zoom level Google Maps asks for tiles at. */
+    static final int MAX_ZOOM = 22;
+
+    /** Number of bits used for each tile coordinate in a cache key. */
+    private static final int COORDINATE_BITS = 24;
+
+    /** Width of the grid lines, in pixels. */
+    private static final float GRID_LINE_WIDTH = 3;
+
+    /** Smallest width or height, in pixels, of the area drawn in one color. */
+    private static final double MIN_NODE_PIXELS = 4;
+
+    /** Smallest distance, in pixels, between the grid lines drawn. */
+    private static final double MIN_LINE_SPACING = 16;
+
+    /** Bits of a color holding the red, green, and blue components. */
+    private static final int RGB_MASK = 0xFFFFFF;
+
+    /** Position of a color's alpha component. */
+    private static final int ALPHA_SHIFT = 24;
+
+    /** Degrees of longitude around the world. */
+    private static final double FULL_CIRCLE = 360;
+
+    /** Longitude of the west edge of the map. */
+    private static final double MAP_WEST = -180;
+
+    /** Compression quality passed to Bitmap.compress (ignored for PNG, which is lossless). */
+    private static final int PNG_QUALITY = 100;
+
+    /** The grid being drawn. */
+    private final AreaGrid grid;
+
+    /** Color of each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /**
+     * Summary of the team owning each cell, over the game's CellOwnership. The game changes the owners on the
+     * UI thread; tiles copy the nodes they need while holding the cache lock, which ownerChanged also takes to
+     * update the tree after every change.
+     */
+    private final OwnershipQuadtree ownership;
+
+    /** Tiles drawn so far, by key (see tileKey), least recently used first. Also guards version. */
+    private final Map<Long, Tile> cache;
+
+    /** Number of ownership changes so far, so a tile drawn during a change isn't cached. */
+    private int version;
+
+    /**
+     * Creates a provider for a grid.
+     * @param setGrid the game's grid
+     * @param setOwners the team owning each cell, which the caller keeps updating
+     * @param setTeamColors the color of each team, indexed by team ID
+     * @param setCacheSize the most tiles to keep in the cache
+     */
+    public AreaTileProvider(final AreaGrid setGrid, final CellOwnership setOwners,
+                            final int[] setTeamColors, final int setCacheSize) {
+        grid = setGrid;
+        ownership = new OwnershipQuadtree(setOwners);
+        teamColors = setTeamColors.clone();
+        cache = new TileCache(setCacheSize);
+    }
+
+    /**
+     * Drops the cached tiles that show a cell after its owner was changed in the CellOwnership.
+     * <p>
+     * A tile being drawn during the change may or may not show it, so it isn't cached. The map keeps its own
+     * copies of tiles, so the overlay's clearTileCache should be called after one or more changes for them to
+     * appear.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param old the team that owned the cell before, or TeamID.OBSERVER if it wasn't captured
+     */
+    public void ownerChanged(final int x, final int y, final int old) {
+        synchronized (cache) {
+            ownership.ownerChanged(x, y, old);
+            version++;
+            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                double scale = Math.scalb(1.0, zoom);
+                int westTile = (int) Math.floor(mercatorX(grid.getCellWest(x)) * scale);
+                int eastTile = (int) Math.floor(mercatorX(grid.getCellEast(x)) * scale);
+                int northTile = (int) Math.floor(mercatorY(grid.getCellNorth(y)) * scale);
+                int southTile = (int) Math.floor(mercatorY(grid.getCellSouth(y)) * scale);
+                for (int tileX = westTile; tileX <= eastTile; tileX++) {
+                    for (int tileY = northTile; tileY <= southTile; tileY++) {
+                        cache.remove(tileKey(tileX, tileY, zoom));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tiles in the cache.
+     * @return how many tiles are cached
+     */
+    public int getCachedTiles() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Gets a tile, from the cache if possible, otherwise by drawing it.
+     * @param x the tile's X coordinate
+     * @param y the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the tile, or NO_TILE if it doesn't overlap the grid
+     */
+    @Override
+    public Tile getTile(final int x, final int y, final int zoom) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            return NO_TILE;
+        }
+        long key = tileKey(x, y, zoom);
+        int startVersion;
+        synchronized (cache) {
+            Tile cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            startVersion = version;
+        }
+        Tile tile = draw(x, y, zoom);
+        synchronized (cache) {
+            // If an owner changed while drawing, the tile may already be out of date
+            if (version == startVersion) {
+                cache.put(key, tile);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Gets the area of the map a tile covers.
+     * <p>
+     * The edges are plain doubles rather than a LatLngBounds because the easternmost tiles end exactly at the
+     * antimeridian, and a LatLng would turn their east edge of 180 into -180.
+     * @param x the tile's X coordinate
+     * @param y the tile's Y coordinate
+     * @param zoom the zoom level
+     * @param bounds array to receive the tile's edges as {south latitude, west longitude, north latitude,
+     *               east longitude} (at least 4 long)
+     */
+    public static void tileBounds(final int x, final int y, final int zoom, final double[] bounds) {
+        double scale = Math.scalb(1.0, zoom);
+        bounds[0] = latitudeOf((y + 1) / scale);
+        bounds[1] = MAP_WEST + x / scale * FULL_CIRCLE;
+        bounds[2] = latitudeOf(y / scale);
+        bounds[bounds.length - 1] = MAP_WEST + (x + 1) / scale * FULL_CIRCLE;
+    }
+
+    /**
+     * Draws a tile.
+     * @param x the tile's X coordinate
+     * @param y the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the tile, or NO_TILE if it doesn't overlap the grid
+     */
+    private Tile draw(final int x, final int y, final int zoom) {
+        double[] bounds = new double[2 * 2];
+        tileBounds(x, y, zoom, bounds);
+        int[] range = new int[2 * 2];
+        if (grid.cellsIntersecting(bounds[0], bounds[1], bounds[2], bounds[bounds.length - 1], range) == 0) {
+            return NO_TILE;
+        }
+        double scale = Math.scalb(1.0, zoom);
+
+        // pick the quadtree level whose nodes are a few pixels across, and the spacing of the grid lines
+        double cellPixels = Math.min(
+                (pixel(mercatorX(grid.getCellEast(grid.getXCells() - 1)), scale, x)
+                        - pixel(mercatorX(grid.getCellWest(0)), scale, x)) / grid.getXCells(),
+                (pixel(mercatorY(grid.getCellSouth(0)), scale, y)
+                        - pixel(mercatorY(grid.getCellNorth(grid.getYCells() - 1)), scale, y)) / grid.getYCells());
+        int level = 0;
+        while (level < ownership.getLevels() - 1 && Math.scalb(cellPixels, level) < MIN_NODE_PIXELS) {
+            level++;
+        }
+        int lineStep = 1;
+        while (lineStep < Math.max(grid.getXCells(), grid.getYCells()) && cellPixels * lineStep < MIN_LINE_SPACING) {
+            lineStep *= 2;
+        }
+
+        // nodes in range, and the pixel positions of their edges relative to this tile
+        int minX = range[0] >> level;
+        int minY = range[1] >> level;
+        int maxX = range[2] >> level;
+        int maxY = range[range.length - 1] >> level;
+        int[] columnCells = new int[maxX - minX + 2];
+        float[] columns = new float[columnCells.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnCells[i] = Math.min(grid.getXCells(), (minX + i) << level);
+            if (columnCells[i] < grid.getXCells()) {
+                columns[i] = pixel(mercatorX(grid.getCellWest(columnCells[i])), scale, x);
+            } else {
+                columns[i] = pixel(mercatorX(grid.getCellEast(grid.getXCells() - 1)), scale, x);
+            }
+        }
+        int[] rowCells = new int[maxY - minY + 2];
+        float[] rows = new float[rowCells.length];
+        for (int i = 0; i < rows.length; i++) {
+            rowCells[i] = Math.min(grid.getYCells(), (minY + i) << level);
+            if (rowCells[i] < grid.getYCells()) {
+                rows[i] = pixel(mercatorY(grid.getCellSouth(rowCells[i])), scale, y);
+            } else {
+                rows[i] = pixel(mercatorY(grid.getCellNorth(grid.getYCells() - 1)), scale, y);
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+
+        // captured nodes, with their colors copied all at once
+        int[] colors = new int[(maxX - minX + 1) * (maxY - minY + 1)];
+        synchronized (cache) {
+            int i = 0;
+            for (int nodeY = minY; nodeY <= maxY; nodeY++) {
+                for (int nodeX = minX; nodeX <= maxX; nodeX++) {
+                    colors[i] = nodeColor(level, nodeX, nodeY);
+                    i++;
+                }
+            }
+        }
+        paint.setStyle(Paint.Style.FILL);
+        int i = 0;
+        for (int nodeY = minY; nodeY <= maxY; nodeY++) {
+            for (int nodeX = minX; nodeX <= maxX; nodeX++) {
+                int color = colors[i];
+                i++;
+                if (color != 0) {
+                    paint.setColor(color);
+                    // rows go from south to north, so the north edge has the smaller pixel Y
+                    canvas.drawRect(columns[nodeX - minX], rows[nodeY - minY + 1],
+                            columns[nodeX - minX + 1], rows[nodeY - minY], paint);
+                }
+            }
+        }
+
+        // every lineStep-th grid line, and the border
+        paint.setColor(BLACK);
+        paint.setStrokeWidth(GRID_LINE_WIDTH);
+        for (int c = 0; c < columns.length; c++) {
+            if (columnCells[c] % lineStep == 0 || columnCells[c] == grid.getXCells()) {
+                canvas.drawLine(columns[c], rows[0], columns[c], rows[rows.length - 1], paint);
+            }
+        }
+        for (int r = 0; r < rows.length; r++) {
+            if (rowCells[r] % lineStep == 0 || rowCells[r] == grid.getYCells()) {
+                canvas.drawLine(columns[0], rows[r], columns[columns.length - 1], rows[r], paint);
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, PNG_QUALITY, png);
+        bitmap.recycle();
+        return new Tile(TILE_SIZE, TILE_SIZE, png.toByteArray());
+    }
+
+    /**
+     * HELPER FUNCTION: gets the color to fill a quadtree node with. The caller must hold the cache lock.
+     * @param level the node's level
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @return the dominant team's color, with half the alpha if the node isn't uniform, or 0 (transparent) if
+     *         none of the node's cells are captured
+     */
+    private int nodeColor(final int level, final int x, final int y) {
+        int team = ownership.getDominantTeam(level, x, y);
+        if (team == TeamID.OBSERVER) {
+            return 0;
+        }
+        int color = teamColors[team];
+        if (!ownership.isUniform(level, x, y)) {
+            // halve the alpha
+            color = ((color >>> (ALPHA_SHIFT + 1)) << ALPHA_SHIFT) | (color & RGB_MASK);
+        }
+        return color;
+    }
+
+    /**
+     * HELPER FUNCTION: converts a map coordinate into a pixel coordinate within a tile.
+     * @param mercator the coordinate, as a fraction of the world (see mercatorX and mercatorY)
+     * @param scale the number of tiles across the world at the zoom level
+     * @param tile the tile's coordinate in the same direction
+     * @return the pixel coordinate, which may be outside the tile
+     */
+    private static float pixel(final double mercator, final double scale, final int tile) {
+        return (float) ((mercator * scale - tile) * TILE_SIZE);
+    }
+
+    /**
+     * HELPER FUNCTION: gets how far east a longitude is across the Web Mercator map.
+     * @param longitude the longitude
+     * @return the fraction of the world's width west of the longitude
+     */
+    private static double mercatorX(final double longitude) {
+        return (longitude - MAP_WEST) / FULL_CIRCLE;
+    }
+
+    /**
+     * HELPER FUNCTION: gets how far south a latitude is down the Web Mercator map.
+     * @param latitude the latitude
+     * @return the fraction of the world's height north of the latitude
+     */
+    private static double mercatorY(final double latitude) {
+        double radians = Math.toRadians(latitude);
+        return (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+    }
+
+    /**
+     * HELPER FUNCTION: gets the latitude a fraction of the way down the Web Mercator map.
+     * @param mercator the fraction of the world's height north of the latitude
+     * @return the latitude
+     */
+    private static double latitudeOf(final double mercator) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * mercator))));
+    }
+
+    /**
+     * HELPER FUNCTION: packs a tile's coordinates into one cache key.
+     * @param x the tile's X coordinate
+     * @param y the tile's Y coordinate
+     * @param zoom the zoom level
+     * @return the key
+     */
+    private static long tileKey(final int x, final int y, final int zoom) {
+        return ((long) zoom << (2 * COORDINATE_BITS)) | ((long) x << COORDINATE_BITS) | y;
+    }
+
+    /**
+     * A map of tiles that drops its least recently used tile when it grows past a fixed size.
+     */
+    private static final class TileCache extends LinkedHashMap<Long, Tile> {
+
+        /** Most tiles to keep. */
+        private final int maxTiles;
+
+        /**
+         * Creates an empty cache.
+         * @param setMaxTiles the most tiles to keep
+         */
+        TileCache(final int setMaxTiles) {
+            super(2, 1, true);
+            maxTiles = setMaxTiles;
+        }
+
+        /**
+         * Decides whether to drop the least recently used tile after adding one.
+         * @param eldest the least recently used entry
+         * @return whether the cache has grown too large
+         */
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Tile> eldest) {
+            return size() > maxTiles;
+        }
+
+    }
+
+}
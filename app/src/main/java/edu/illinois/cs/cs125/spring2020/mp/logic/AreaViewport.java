@@ -0,0 +1,446 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Polygon;
+import com.google.android.gms.maps.model.PolygonOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static android.graphics.Color.BLACK;
+
+/**
+ * Keeps only the part of an area mode game near the screen on the map, so large games don't fill the map with
+ * objects nobody can see.
+ * <p>
+ * Whenever the camera stops moving, the cells in view (plus a margin of cells around them) are found with
+ * AreaGrid.cellsIntersecting. The grid lines around that block are drawn as two zig-zag polylines (see
+ * AreaGrid.gridPaths), which are moved rather than re-added. Captured cells that have left the block have
+ * their polygons removed, and captured cells that have entered it get polygons added, so only cells that were
+ * or are now near the screen are touched. If territories are merged, each territory with a cell in the block
+ * gets one polygon (see {@link TerritoryMap}) instead, so a team's connected cells are a single map object.
+ * <p>
+ * If the block has too many cells, as when zoomed far out, it is drawn from an {@link OwnershipQuadtree}
+ * instead: one rectangle per node at the most detailed level with few enough nodes, in the color of the node's
+ * dominant team (faded if the node's cells aren't all owned by that team). Either way the number of map
+ * objects stays bounded however large the area is.
+ */
+public final class AreaViewport implements GoogleMap.OnCameraIdleListener {
+
+    /** Width of the grid lines, matching AreaDivider.renderGrid. */
+    private static final float GRID_LINE_WIDTH = 12;
+
+    /** Length of a cell range array (see AreaGrid.cellsIntersecting). */
+    private static final int RANGE_LENGTH = 4;
+
+    /** Index of the maximum Y index in a cell range array. */
+    private static final int MAX_Y = 3;
+
+    /** Bits of a color holding the red, green, and blue components. */
+    private static final int RGB_MASK = 0xFFFFFF;
+
+    /** Position of a color's alpha component. */
+    private static final int ALPHA_SHIFT = 24;
+
+    /** The map being drawn on. */
+    private final GoogleMap map;
+
+    /** The game's grid. */
+    private final AreaGrid grid;
+
+    /** Color of each team, indexed by team ID. */
+    private final int[] teamColors;
+
+    /** Number of cells around the screen to also draw, so short pans don't show empty space. */
+    private final int margin;
+
+    /** Most cells (or quadtree nodes, when zoomed out) to draw polygons for at once. */
+    private final int maxCells;
+
+    /** Team owning each cell (shared with the game), summarized at each level of detail. */
+    private final OwnershipQuadtree ownership;
+
+    /**
+     * The polygon on the map for each cell, indexed by cell ID, or null if none is attached. Not used (null)
+     * when territories are merged.
+     */
+    private final Polygon[] polygons;
+
+    /** Groups captured cells into territories drawn as one polygon each, or null if each cell gets one. */
+    private final TerritoryMap territories;
+
+    /** The polygon on the map for each attached territory, by territory ID. */
+    private final Map<Integer, Polygon> territoryPolygons = new HashMap<>();
+
+    /** The drawn block of cells (minimum X, minimum Y, maximum X, maximum Y), all -1 if none. */
+    private final int[] shown = {-1, -1, -1, -1};
+
+    /** Whether cell polygons are shown for the drawn block. */
+    private boolean showingCells;
+
+    /** The quadtree level of the node rectangles drawn, or 0 if none are drawn. */
+    private int nodeLevel;
+
+    /** The block of nodes drawn at nodeLevel (minimum X, minimum Y, maximum X, maximum Y). */
+    private final int[] nodeBlock = new int[RANGE_LENGTH];
+
+    /** The polygon on the map for each drawn node, by node index at nodeLevel (row-major). */
+    private final Map<Integer, Polygon> nodePolygons = new HashMap<>();
+
+    /** The cells in view, reused between camera moves. */
+    private final int[] visible = new int[RANGE_LENGTH];
+
+    /** The horizontal grid lines, or null if not added yet. */
+    private Polyline horizontalLines;
+
+    /** The vertical grid lines, or null if not added yet. */
+    private Polyline verticalLines;
+
+    /**
+     * Creates a viewport for a grid. Nothing is drawn until the first update.
+     * @param setMap the map to draw on
+     * @param setGrid the game's grid
+     * @param setOwners the team owning each cell, which the caller keeps updating
+     * @param setTeamColors the color of each team, indexed by team ID
+     * @param setMargin the number of cells around the screen to also draw
+     * @param setMaxCells the most cells (or quadtree nodes, when zoomed out) to draw polygons for at once
+     * @param mergeTerritories whether to draw one polygon per territory rather than one per cell
+     */
+    public AreaViewport(final GoogleMap setMap, final AreaGrid setGrid, final CellOwnership setOwners,
+                        final int[] setTeamColors, final int setMargin, final int setMaxCells,
+                        final boolean mergeTerritories) {
+        map = setMap;
+        grid = setGrid;
+        teamColors = setTeamColors.clone();
+        margin = setMargin;
+        maxCells = setMaxCells;
+        ownership = new OwnershipQuadtree(setOwners);
+        if (mergeTerritories) {
+            territories = new TerritoryMap(setOwners);
+            polygons = null;
+        } else {
+            territories = null;
+            polygons = new Polygon[setGrid.getCellCount()];
+        }
+    }
+
+    /**
+     * Redraws a cell's polygon, if it is in the drawn block, after its owner was changed in the CellOwnership.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param old the team that owned the cell before, or TeamID.OBSERVER if it wasn't captured
+     */
+    public void ownerChanged(final int x, final int y, final int old) {
+        ownership.ownerChanged(x, y, old);
+        boolean inBlock = showingCells && x >= shown[0] && x <= shown[2] && y >= shown[1] && y <= shown[MAX_Y];
+        if (territories != null) {
+            IntList removed = new IntList();
+            IntList added = new IntList();
+            territories.ownerChanged(x, y, old, removed, added);
+            // the new territories take over from the removed ones, so they are shown if any of those were
+            boolean shownBefore = inBlock;
+            for (int i = 0; i < removed.size(); i++) {
+                if (detachTerritory(removed.get(i))) {
+                    shownBefore = true;
+                }
+            }
+            if (showingCells && shownBefore) {
+                for (int i = 0; i < added.size(); i++) {
+                    attachTerritory(added.get(i));
+                }
+            }
+        } else {
+            detach(grid.cellId(x, y));
+            if (inBlock) {
+                attach(x, y);
+            }
+        }
+        if (nodeLevel > 0) {
+            int nodeX = x >> nodeLevel;
+            int nodeY = y >> nodeLevel;
+            if (nodeX >= nodeBlock[0] && nodeX <= nodeBlock[2]
+                    && nodeY >= nodeBlock[1] && nodeY <= nodeBlock[MAX_Y]) {
+                Polygon oldNode = nodePolygons.remove(nodeY * ownership.getWidth(nodeLevel) + nodeX);
+                if (oldNode != null) {
+                    oldNode.remove();
+                }
+                attachNode(nodeX, nodeY);
+            }
+        }
+    }
+
+    /**
+     * Redraws the block around the map's visible region when the camera stops moving.
+     */
+    @Override
+    public void onCameraIdle() {
+        update(map.getProjection().getVisibleRegion().latLngBounds);
+    }
+
+    /**
+     * Redraws the block of cells around a region.
+     * @param viewport the region in view
+     */
+    public void update(final LatLngBounds viewport) {
+        if (grid.cellsIntersecting(viewport, visible) == 0) {
+            hideAll();
+            return;
+        }
+        int minX = Math.max(0, visible[0] - margin);
+        int minY = Math.max(0, visible[1] - margin);
+        int maxX = Math.min(grid.getXCells() - 1, visible[2] + margin);
+        int maxY = Math.min(grid.getYCells() - 1, visible[MAX_Y] + margin);
+        int level = ownership.levelFor(minX, minY, maxX, maxY, maxCells);
+        boolean showCells = level == 0;
+
+        if (territories != null) {
+            showTerritories(showCells, minX, minY, maxX, maxY);
+        }
+
+        // remove polygons that are no longer wanted
+        if (showingCells && territories == null) {
+            for (int y = shown[1]; y <= shown[MAX_Y]; y++) {
+                for (int x = shown[0]; x <= shown[2]; x++) {
+                    if (!showCells || x < minX || x > maxX || y < minY || y > maxY) {
+                        detach(grid.cellId(x, y));
+                    }
+                }
+            }
+        }
+
+        // add polygons for captured cells that don't have one yet
+        if (showCells && territories == null) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (ownership.getOwner(x, y) != TeamID.OBSERVER && polygons[grid.cellId(x, y)] == null) {
+                        attach(x, y);
+                    }
+                }
+            }
+        }
+
+        // redraw the node rectangles if the level or block of nodes changed
+        if (level != nodeLevel || (level > 0 && (minX >> level != nodeBlock[0] || minY >> level != nodeBlock[1]
+                || maxX >> level != nodeBlock[2] || maxY >> level != nodeBlock[MAX_Y]))) {
+            detachNodes();
+            nodeLevel = level;
+            if (level > 0) {
+                nodeBlock[0] = minX >> level;
+                nodeBlock[1] = minY >> level;
+                nodeBlock[2] = maxX >> level;
+                nodeBlock[MAX_Y] = maxY >> level;
+                for (int y = nodeBlock[1]; y <= nodeBlock[MAX_Y]; y++) {
+                    for (int x = nodeBlock[0]; x <= nodeBlock[2]; x++) {
+                        attachNode(x, y);
+                    }
+                }
+            }
+        }
+
+        List<LatLng> horizontal = new ArrayList<>();
+        List<LatLng> vertical = new ArrayList<>();
+        grid.gridPaths(minX, minY, maxX, maxY, horizontal, vertical);
+        if (horizontalLines == null) {
+            horizontalLines = map.addPolyline(gridLine(horizontal));
+            verticalLines = map.addPolyline(gridLine(vertical));
+        } else {
+            horizontalLines.setPoints(horizontal);
+            verticalLines.setPoints(vertical);
+            horizontalLines.setVisible(true);
+            verticalLines.setVisible(true);
+        }
+
+        shown[0] = minX;
+        shown[1] = minY;
+        shown[2] = maxX;
+        shown[MAX_Y] = maxY;
+        showingCells = showCells;
+    }
+
+    /**
+     * Removes everything the viewport drew from the map, for when the game is left. Another update would draw
+     * it again.
+     */
+    public void remove() {
+        hideAll();
+        if (horizontalLines != null) {
+            horizontalLines.remove();
+            verticalLines.remove();
+            horizontalLines = null;
+            verticalLines = null;
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: hides everything, for when no part of the grid is in view.
+     */
+    private void hideAll() {
+        if (territories != null) {
+            showTerritories(false, 0, 0, -1, -1);
+        } else if (showingCells) {
+            for (int y = shown[1]; y <= shown[MAX_Y]; y++) {
+                for (int x = shown[0]; x <= shown[2]; x++) {
+                    detach(grid.cellId(x, y));
+                }
+            }
+        }
+        detachNodes();
+        nodeLevel = 0;
+        if (horizontalLines != null) {
+            horizontalLines.setVisible(false);
+            verticalLines.setVisible(false);
+        }
+        for (int i = 0; i < RANGE_LENGTH; i++) {
+            shown[i] = -1;
+        }
+        showingCells = false;
+    }
+
+    /**
+     * HELPER FUNCTION: adds a polygon in its owner's color for a cell.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     */
+    private void attach(final int x, final int y) {
+        polygons[grid.cellId(x, y)] = addRectangle(x, y, x, y, teamColors[ownership.getOwner(x, y)]);
+    }
+
+    /**
+     * HELPER FUNCTION: attaches polygons for the territories with cells in a block, and removes the rest.
+     * @param show whether to show any territories at all
+     * @param minX the X index of the block's westernmost cells
+     * @param minY the Y index of the block's southernmost cells
+     * @param maxX the X index of the block's easternmost cells
+     * @param maxY the Y index of the block's northernmost cells
+     */
+    private void showTerritories(final boolean show, final int minX, final int minY, final int maxX, final int maxY) {
+        Set<Integer> wanted = new HashSet<>();
+        if (show) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int territory = territories.territoryOf(x, y);
+                    if (territory >= 0) {
+                        wanted.add(territory);
+                    }
+                }
+            }
+        }
+        Iterator<Map.Entry<Integer, Polygon>> attached = territoryPolygons.entrySet().iterator();
+        while (attached.hasNext()) {
+            Map.Entry<Integer, Polygon> entry = attached.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().remove();
+                attached.remove();
+            }
+        }
+        for (int territory : wanted) {
+            attachTerritory(territory);
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: adds a polygon in its team's color for a territory, unless it has one or no longer exists.
+     * @param territory the territory ID
+     */
+    private void attachTerritory(final int territory) {
+        if (territories.getSize(territory) == 0 || territoryPolygons.containsKey(territory)) {
+            return;
+        }
+        PolygonOptions po = grid.outlinePolygon(territories.outline(territory))
+                .fillColor(teamColors[territories.getTeam(territory)]);
+        territoryPolygons.put(territory, map.addPolygon(po));
+    }
+
+    /**
+     * HELPER FUNCTION: removes a territory's polygon from the map, if it has one.
+     * @param territory the territory ID
+     * @return whether the territory had a polygon
+     */
+    private boolean detachTerritory(final int territory) {
+        Polygon polygon = territoryPolygons.remove(territory);
+        if (polygon == null) {
+            return false;
+        }
+        polygon.remove();
+        return true;
+    }
+
+    /**
+     * HELPER FUNCTION: adds a rectangle for a quadtree node at nodeLevel, if any of its cells are captured.
+     * @param x the node's X index
+     * @param y the node's Y index
+     */
+    private void attachNode(final int x, final int y) {
+        int team = ownership.getDominantTeam(nodeLevel, x, y);
+        if (team == TeamID.OBSERVER) {
+            return;
+        }
+        int color = teamColors[team];
+        if (!ownership.isUniform(nodeLevel, x, y)) {
+            // halve the alpha
+            color = ((color >>> (ALPHA_SHIFT + 1)) << ALPHA_SHIFT) | (color & RGB_MASK);
+        }
+        int lastX = Math.min(grid.getXCells() - 1, ((x + 1) << nodeLevel) - 1);
+        int lastY = Math.min(grid.getYCells() - 1, ((y + 1) << nodeLevel) - 1);
+        nodePolygons.put(y * ownership.getWidth(nodeLevel) + x,
+                addRectangle(x << nodeLevel, y << nodeLevel, lastX, lastY, color));
+    }
+
+    /**
+     * HELPER FUNCTION: removes all quadtree node rectangles from the map.
+     */
+    private void detachNodes() {
+        for (Polygon polygon : nodePolygons.values()) {
+            polygon.remove();
+        }
+        nodePolygons.clear();
+    }
+
+    /**
+     * HELPER FUNCTION: adds a filled rectangle covering a block of cells.
+     * @param minX the X index of the block's westernmost cells
+     * @param minY the Y index of the block's southernmost cells
+     * @param maxX the X index of the block's easternmost cells
+     * @param maxY the Y index of the block's northernmost cells
+     * @param color the fill color
+     * @return the polygon on the map
+     */
+    private Polygon addRectangle(final int minX, final int minY, final int maxX, final int maxY, final int color) {
+        LatLng sw = new LatLng(grid.getCellSouth(minY), grid.getCellWest(minX));
+        LatLng ne = new LatLng(grid.getCellNorth(maxY), grid.getCellEast(maxX));
+        PolygonOptions po = new PolygonOptions()
+                .add(sw, new LatLng(ne.latitude, sw.longitude), ne, new LatLng(sw.latitude, ne.longitude), sw)
+                .fillColor(color);
+        return map.addPolygon(po);
+    }
+
+    /**
+     * HELPER FUNCTION: removes a cell's polygon from the map, if it has one.
+     * @param cell the cell's ID
+     */
+    private void detach(final int cell) {
+        if (polygons[cell] != null) {
+            polygons[cell].remove();
+            polygons[cell] = null;
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: configures a grid line polyline.
+     * @param points the points of the line
+     * @return the polyline options
+     */
+    private static PolylineOptions gridLine(final List<LatLng> points) {
+        return new PolylineOptions().addAll(points).color(BLACK).width(GRID_LINE_WIDTH).zIndex(1);
+    }
+
+}
@@ -0,0 +1,161 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers TargetVisitChecker's visit candidate and snake rule questions for many players and locations at once,
+ * such as when re-scoring a recorded game.
+ * <p>
+ * The targets are indexed once in a {@link TargetKdTree} when the checker is created and never change after
+ * that, so the queries are split into slices that a fork-join pool evaluates in parallel. All slices query the
+ * same tree, which can be shared between threads, and each writes only its own part of the result arrays.
+ */
+public final class BatchVisitChecker {
+
+    /** Number of queries below which a slice is evaluated directly instead of being split further. */
+    private static final int SLICE_SIZE = 64;
+
+    /** The latitudes of all targets. */
+    private final double[] latitudes;
+
+    /** The longitudes of all targets (same order as latitudes). */
+    private final double[] longitudes;
+
+    /** The proximity threshold, in meters. */
+    private final int range;
+
+    /** Index of the targets, shared by all slices. */
+    private final TargetKdTree tree;
+
+    /** The pool that evaluates the slices. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a checker that runs on the common fork-join pool.
+     * @param setLatitudes the latitudes of all targets in the game
+     * @param setLongitudes the longitudes of all targets in the game (same order as latitudes)
+     * @param setRange the game's proximity threshold, in meters
+     */
+    public BatchVisitChecker(final double[] setLatitudes, final double[] setLongitudes, final int setRange) {
+        this(setLatitudes, setLongitudes, setRange, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a checker.
+     * @param setLatitudes the latitudes of all targets in the game
+     * @param setLongitudes the longitudes of all targets in the game (same order as latitudes)
+     * @param setRange the game's proximity threshold, in meters
+     * @param setPool the pool to evaluate queries on
+     */
+    public BatchVisitChecker(final double[] setLatitudes, final double[] setLongitudes, final int setRange,
+                             final ForkJoinPool setPool) {
+        latitudes = setLatitudes.clone();
+        longitudes = setLongitudes.clone();
+        range = setRange;
+        tree = new TargetKdTree(latitudes, longitudes);
+        pool = setPool;
+    }
+
+    /**
+     * Evaluates a batch of queries, each a player at a location.
+     * <p>
+     * For each query, the candidate is what TargetVisitChecker.getVisitCandidate returns for the player's path
+     * and location, and the target is claimable if there is a candidate and TargetVisitChecker.checkSnakeRule
+     * allows visiting it. The paths are not modified. Results are written into the caller's arrays.
+     * @param paths each player's path array (indexes of targets visited so far, -1 for empty slots)
+     * @param players for each query, the index into paths of the player asking
+     * @param queryLatitudes for each query, the player's latitude
+     * @param queryLongitudes for each query, the player's longitude
+     * @param candidates array to receive each query's candidate target, or -1 if there is none
+     * @param claimable array to receive whether each query's candidate can be claimed without crossing the path
+     */
+    public void evaluate(final int[][] paths, final int[] players,
+                         final double[] queryLatitudes, final double[] queryLongitudes,
+                         final int[] candidates, final boolean[] claimable) {
+        VisitPath[] visitPaths = new VisitPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            visitPaths[i] = VisitPath.fromArray(paths[i]);
+        }
+        pool.invoke(new Slice(visitPaths, players, queryLatitudes, queryLongitudes, candidates, claimable,
+                0, players.length));
+    }
+
+    /**
+     * A run of queries to evaluate, split in half until it is small enough to do directly.
+     */
+    private final class Slice extends RecursiveAction {
+
+        /** Each player's path. */
+        private final VisitPath[] paths;
+
+        /** The player index of each query. */
+        private final int[] players;
+
+        /** The latitude of each query. */
+        private final double[] queryLatitudes;
+
+        /** The longitude of each query. */
+        private final double[] queryLongitudes;
+
+        /** The candidate for each query. */
+        private final int[] candidates;
+
+        /** Whether each query's candidate is claimable. */
+        private final boolean[] claimable;
+
+        /** The first query of the slice (inclusive). */
+        private final int start;
+
+        /** The end of the slice (exclusive). */
+        private final int end;
+
+        /**
+         * Creates a slice.
+         * @param setPaths each player's path
+         * @param setPlayers the player index of each query
+         * @param setQueryLatitudes the latitude of each query
+         * @param setQueryLongitudes the longitude of each query
+         * @param setCandidates array to receive the candidates
+         * @param setClaimable array to receive whether the candidates are claimable
+         * @param setStart the first query of the slice (inclusive)
+         * @param setEnd the end of the slice (exclusive)
+         */
+        Slice(final VisitPath[] setPaths, final int[] setPlayers,
+              final double[] setQueryLatitudes, final double[] setQueryLongitudes,
+              final int[] setCandidates, final boolean[] setClaimable, final int setStart, final int setEnd) {
+            paths = setPaths;
+            players = setPlayers;
+            queryLatitudes = setQueryLatitudes;
+            queryLongitudes = setQueryLongitudes;
+            candidates = setCandidates;
+            claimable = setClaimable;
+            start = setStart;
+            end = setEnd;
+        }
+
+        /**
+         * Evaluates the slice, or splits it and evaluates both halves in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (end - start > SLICE_SIZE) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Slice(paths, players, queryLatitudes, queryLongitudes, candidates, claimable,
+                                start, middle),
+                        new Slice(paths, players, queryLatitudes, queryLongitudes, candidates, claimable,
+                                middle, end));
+                return;
+            }
+            for (int q = start; q < end; q++) {
+                VisitPath path = paths[players[q]];
+                int candidate = tree.firstUnvisited(queryLatitudes[q], queryLongitudes[q], range, path);
+                candidates[q] = candidate;
+                claimable[q] = candidate >= 0
+                        && TargetVisitChecker.checkSnakeRule(latitudes, longitudes, path, candidate);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.Arrays;
+
+/**
+ * Stores which team owns each cell of an area mode grid, one byte per cell.
+ * <p>
+ * Owners range from TeamID.OBSERVER (not captured) to TeamID.MAX_TEAM, so a byte holds one with room to spare
+ * and a million-cell grid takes a megabyte. Cells are numbered like AreaDivider's cell IDs (row-major, y times
+ * the number of X cells plus x). The number of cells each team owns is kept up to date on every change, so
+ * counting a team's cells doesn't scan the grid.
+ */
+public final class CellOwnership {
+
+    /** Number of cells in the X direction. */
+    private final int xCells;
+
+    /** Number of cells in the Y direction. */
+    private final int yCells;
+
+    /** Owner of each cell, by cell ID. */
+    private final byte[] owners;
+
+    /** Number of cells owned by each team, indexed by team ID (TeamID.OBSERVER counts uncaptured cells). */
+    private final int[] counts = new int[TeamID.MAX_TEAM + 1];
+
+    /**
+     * Creates a store for a grid with no captured cells.
+     * @param setXCells the number of cells in the X direction
+     * @param setYCells the number of cells in the Y direction
+     */
+    public CellOwnership(final int setXCells, final int setYCells) {
+        xCells = setXCells;
+        yCells = setYCells;
+        owners = new byte[setXCells * setYCells];
+        counts[TeamID.OBSERVER] = owners.length;
+    }
+
+    /**
+     * Gets the number of cells in the X direction.
+     * @return the grid's width in cells
+     */
+    public int getXCells() {
+        return xCells;
+    }
+
+    /**
+     * Gets the number of cells in the Y direction.
+     * @return the grid's height in cells
+     */
+    public int getYCells() {
+        return yCells;
+    }
+
+    /**
+     * Gets the number of cells.
+     * @return the number of cells in the grid
+     */
+    public int size() {
+        return owners.length;
+    }
+
+    /**
+     * Gets a cell's owner.
+     * @param cell the cell's ID
+     * @return the owning team, or TeamID.OBSERVER if the cell isn't captured
+     */
+    public int get(final int cell) {
+        return owners[cell];
+    }
+
+    /**
+     * Gets a cell's owner.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the owning team, or TeamID.OBSERVER if the cell isn't captured
+     */
+    public int get(final int x, final int y) {
+        return owners[y * xCells + x];
+    }
+
+    /**
+     * Sets a cell's owner.
+     * @param cell the cell's ID
+     * @param team the team now owning the cell, or TeamID.OBSERVER to make it uncaptured
+     * @return the cell's previous owner
+     */
+    public int set(final int cell, final int team) {
+        if (team < TeamID.OBSERVER || team > TeamID.MAX_TEAM) {
+            throw new IllegalArgumentException("invalid team ID: " + team);
+        }
+        int old = owners[cell];
+        owners[cell] = (byte) team;
+        counts[old]--;
+        counts[team]++;
+        return old;
+    }
+
+    /**
+     * Sets a cell's owner.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param team the team now owning the cell, or TeamID.OBSERVER to make it uncaptured
+     * @return the cell's previous owner
+     */
+    public int set(final int x, final int y, final int team) {
+        return set(y * xCells + x, team);
+    }
+
+    /**
+     * Gets the number of cells a team owns.
+     * @param team the team ID, or TeamID.OBSERVER to count uncaptured cells
+     * @return the number of cells, or 0 for an invalid team ID
+     */
+    public int count(final int team) {
+        if (team < TeamID.OBSERVER || team > TeamID.MAX_TEAM) {
+            return 0;
+        }
+        return counts[team];
+    }
+
+    /**
+     * Copies the owners of all cells, for example to save a game's state.
+     * @return the owner of each cell, by cell ID
+     */
+    public byte[] snapshot() {
+        return owners.clone();
+    }
+
+    /**
+     * Replaces the owners of all cells with ones from a snapshot.
+     * @param snapshot the owner of each cell, by cell ID, as returned by {@link #snapshot}
+     */
+    public void restore(final byte[] snapshot) {
+        if (snapshot.length != owners.length) {
+            throw new IllegalArgumentException("snapshot has " + snapshot.length + " cells, not " + owners.length);
+        }
+        int[] newCounts = new int[counts.length];
+        for (byte owner : snapshot) {
+            if (owner < TeamID.OBSERVER || owner > TeamID.MAX_TEAM) {
+                throw new IllegalArgumentException("invalid team ID: " + owner);
+            }
+            newCounts[owner]++;
+        }
+        System.arraycopy(snapshot, 0, owners, 0, owners.length);
+        System.arraycopy(newCounts, 0, counts, 0, counts.length);
+    }
+
+    /**
+     * Makes every cell uncaptured.
+     */
+    public void clear() {
+        Arrays.fill(owners, (byte) TeamID.OBSERVER);
+        Arrays.fill(counts, 0);
+        counts[TeamID.OBSERVER] = owners.length;
+    }
+
+}
@@ -0,0 +1,287 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers whether lines between targets cross, for games whose lines always connect two fixed targets.
+ * <p>
+ * Since targets don't move, whether the line between targets a and b crosses the line between c and d never
+ * changes during a game. Each unordered pair of lines gets a key, and the answer is stored the first time it
+ * is asked for. When the game has few enough targets, every key has its own two bits in a packed table
+ * (unknown, no crossing, or crossing). Otherwise the answers go in a fixed-size direct-mapped cache, where a
+ * new answer evicts whatever answer had the same slot, so memory stays bounded however many targets there are.
+ * <p>
+ * Lookups and stores are atomic, so the table can be filled by {@link #startWarming} on a background thread
+ * while the game uses it. A lost race only means an answer is computed again.
+ */
+public final class CrossingMemo {
+
+    /** Largest number of line pairs given a dense table (two bits each, so a megabyte at most). */
+    static final long DENSE_LIMIT = 1L << 22;
+
+    /** Number of slots in the cache used for games too large for a dense table. */
+    static final int CACHE_SLOTS = 1 << 16;
+
+    /** Number of bits per answer in the dense table. */
+    private static final int BITS_PER_ANSWER = 2;
+
+    /** Number of answers per long in the dense table. */
+    private static final int ANSWERS_PER_WORD = Long.SIZE / BITS_PER_ANSWER;
+
+    /** Dense table answer bits: not computed yet. */
+    private static final long UNKNOWN = 0;
+
+    /** Dense table answer bits: the lines don't cross. */
+    private static final long APART = 1;
+
+    /** Dense table answer bits: the lines cross. */
+    private static final long CROSSING = 2;
+
+    /** Mask for one answer in the dense table. */
+    private static final long ANSWER_MASK = 3;
+
+    /** Cache slot value for an empty slot; real entries are never negative. */
+    private static final long EMPTY = -1;
+
+    /** Multiplier for spreading keys over the cache slots (the 64-bit golden ratio). */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** The Y coordinates (latitudes or projected) of the targets. */
+    private final double[] ys;
+
+    /** The X coordinates (longitudes or projected) of the targets. */
+    private final double[] xs;
+
+    /** How close in both X and Y two targets must be to count as the same point. */
+    private final double pointTolerance;
+
+    /** Two-bit answers by key, or null if the cache is used instead. */
+    private final AtomicLongArray dense;
+
+    /** Cache entries (key shifted left one bit, plus one if crossing), or null if the dense table is used. */
+    private final AtomicLongArray cache;
+
+    /** Number of cache slots minus one, for masking hashes into slot indexes. */
+    private final int cacheMask;
+
+    /**
+     * Creates an empty memo.
+     * @param setYs the Y coordinates (latitudes or projected) of all targets
+     * @param setXs the X coordinates (longitudes or projected) of all targets (same order as setYs)
+     * @param setPointTolerance how close in both X and Y two targets must be to count as the same point (see
+     *                          {@link LocalFrame#getPointTolerance()})
+     */
+    public CrossingMemo(final double[] setYs, final double[] setXs, final double setPointTolerance) {
+        ys = setYs;
+        xs = setXs;
+        pointTolerance = setPointTolerance;
+        if (fitsDense(setYs.length)) {
+            long lines = lineCount(setYs.length);
+            long pairs = lines * (lines - 1) / 2;
+            dense = new AtomicLongArray((int) ((pairs + ANSWERS_PER_WORD - 1) / ANSWERS_PER_WORD));
+            cache = null;
+            cacheMask = 0;
+        } else {
+            dense = null;
+            cache = new AtomicLongArray(CACHE_SLOTS);
+            for (int i = 0; i < CACHE_SLOTS; i++) {
+                cache.set(i, EMPTY);
+            }
+            cacheMask = CACHE_SLOTS - 1;
+        }
+    }
+
+    /**
+     * Determines whether a memo for a number of targets would have a dense table.
+     * @param targets the number of targets in the game
+     * @return whether every answer would have its own place in the table
+     */
+    public static boolean fitsDense(final int targets) {
+        long lines = lineCount(targets);
+        // Compare before squaring so that huge games can't overflow
+        return lines <= DENSE_LIMIT && lines * (lines - 1) / 2 <= DENSE_LIMIT;
+    }
+
+    /**
+     * Determines whether every answer has its own place in the table, so nothing is ever evicted.
+     * @return whether the memo uses a dense table rather than a bounded cache
+     */
+    public boolean isDense() {
+        return dense != null;
+    }
+
+    /**
+     * Determines whether the line between two targets crosses the line between two others.
+     * <p>
+     * The answer is what SegmentMath.linesCross gives with each line's endpoints and the two lines put in
+     * a fixed order, so it doesn't depend on the order of the arguments.
+     * @param firstStart the index of the target at one end of a line
+     * @param firstEnd the index of the target at the other end of that line
+     * @param secondStart the index of the target at one end of another line
+     * @param secondEnd the index of the target at the other end of that other line
+     * @return whether the lines cross
+     */
+    public boolean linesCross(final int firstStart, final int firstEnd, final int secondStart, final int secondEnd) {
+        long first = lineKey(firstStart, firstEnd);
+        long second = lineKey(secondStart, secondEnd);
+        if (first < 0 || second < 0 || first == second) {
+            // A line to itself, or a line between a target and itself, is never remembered
+            return compute(firstStart, firstEnd, secondStart, secondEnd);
+        }
+        long key = pairKey(Math.min(first, second), Math.max(first, second));
+        if (dense != null) {
+            return denseLookup(key, firstStart, firstEnd, secondStart, secondEnd);
+        }
+        return cacheLookup(key, firstStart, firstEnd, secondStart, secondEnd);
+    }
+
+    /**
+     * Fills in every answer of a dense table. Does nothing for a bounded cache.
+     * <p>
+     * Stops early if the calling thread is interrupted.
+     */
+    public void warm() {
+        if (dense == null) {
+            return;
+        }
+        int count = ys.length;
+        for (int b = 1; b < count; b++) {
+            for (int a = 0; a < b; a++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                // Pair the line (a, b) with every line that has a smaller key
+                for (int d = 1; d <= b; d++) {
+                    int cEnd = d;
+                    if (d == b) {
+                        cEnd = a;
+                    }
+                    for (int c = 0; c < cEnd; c++) {
+                        linesCross(a, b, c, d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts filling in the table on a daemon thread, so the game doesn't wait for it.
+     * @return the thread, which can be interrupted to stop early
+     */
+    public Thread startWarming() {
+        Thread thread = new Thread(this::warm, "CrossingMemo");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Looks up or computes an answer in the dense table.
+     * @param key the key of the pair of lines
+     * @param firstStart the index of the target at one end of a line
+     * @param firstEnd the index of the target at the other end of that line
+     * @param secondStart the index of the target at one end of another line
+     * @param secondEnd the index of the target at the other end of that other line
+     * @return whether the lines cross
+     */
+    private boolean denseLookup(final long key, final int firstStart, final int firstEnd,
+                                final int secondStart, final int secondEnd) {
+        int word = (int) (key / ANSWERS_PER_WORD);
+        int shift = (int) (key % ANSWERS_PER_WORD) * BITS_PER_ANSWER;
+        long answer = (dense.get(word) >>> shift) & ANSWER_MASK;
+        if (answer != UNKNOWN) {
+            return answer == CROSSING;
+        }
+        boolean crosses = compute(firstStart, firstEnd, secondStart, secondEnd);
+        long bits = APART;
+        if (crosses) {
+            bits = CROSSING;
+        }
+        bits <<= shift;
+        long old = dense.get(word);
+        while (!dense.compareAndSet(word, old, old | bits)) {
+            old = dense.get(word);
+        }
+        return crosses;
+    }
+
+    /**
+     * Looks up or computes an answer in the bounded cache.
+     * @param key the key of the pair of lines
+     * @param firstStart the index of the target at one end of a line
+     * @param firstEnd the index of the target at the other end of that line
+     * @param secondStart the index of the target at one end of another line
+     * @param secondEnd the index of the target at the other end of that other line
+     * @return whether the lines cross
+     */
+    private boolean cacheLookup(final long key, final int firstStart, final int firstEnd,
+                                final int secondStart, final int secondEnd) {
+        int slot = (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & cacheMask;
+        long entry = cache.get(slot);
+        if (entry != EMPTY && entry >>> 1 == key) {
+            return (entry & 1) == 1;
+        }
+        boolean crosses = compute(firstStart, firstEnd, secondStart, secondEnd);
+        long newEntry = key << 1;
+        if (crosses) {
+            newEntry |= 1;
+        }
+        cache.set(slot, newEntry);
+        return crosses;
+    }
+
+    /**
+     * Runs the crossing test with the lines in their fixed order.
+     * @param firstStart the index of the target at one end of a line
+     * @param firstEnd the index of the target at the other end of that line
+     * @param secondStart the index of the target at one end of another line
+     * @param secondEnd the index of the target at the other end of that other line
+     * @return whether the lines cross
+     */
+    private boolean compute(final int firstStart, final int firstEnd, final int secondStart, final int secondEnd) {
+        int lowFirst = Math.min(firstStart, firstEnd);
+        int highFirst = Math.max(firstStart, firstEnd);
+        int lowSecond = Math.min(secondStart, secondEnd);
+        int highSecond = Math.max(secondStart, secondEnd);
+        if (lineKey(lowFirst, highFirst) <= lineKey(lowSecond, highSecond)) {
+            return SegmentMath.linesCross(ys, xs, lowFirst, highFirst, lowSecond, highSecond, pointTolerance);
+        }
+        return SegmentMath.linesCross(ys, xs, lowSecond, highSecond, lowFirst, highFirst, pointTolerance);
+    }
+
+    /**
+     * Gets the number of lines between distinct targets.
+     * @param targets the number of targets
+     * @return the number of unordered pairs of targets
+     */
+    private static long lineCount(final int targets) {
+        return (long) targets * (targets - 1) / 2;
+    }
+
+    /**
+     * Gets the key of the line between two targets, the same whichever end is given first.
+     * @param one the index of one target
+     * @param another the index of the other target
+     * @return the line's key, or -1 if the targets are the same
+     */
+    private static long lineKey(final int one, final int another) {
+        int low = Math.min(one, another);
+        int high = Math.max(one, another);
+        if (low == high) {
+            return -1;
+        }
+        return lineCount(high) + low;
+    }
+
+    /**
+     * Gets the key of a pair of lines.
+     * @param lower the smaller line key
+     * @param higher the larger line key
+     * @return the pair's key
+     */
+    private static long pairKey(final long lower, final long higher) {
+        return higher * (higher - 1) / 2 + lower;
+    }
+
+}
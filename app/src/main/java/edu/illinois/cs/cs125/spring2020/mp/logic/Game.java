@@ -46,6 +46,9 @@ public abstract class Game {
     /** The map indicators for other players. */
     private Map<String, Circle> otherPlayerCircles = new HashMap<>();
 
+    /** Each team's score, indexed by team ID, kept up to date as objectives change hands. */
+    private int[] teamScores = new int[MAX_TEAM + 1];
+
     /**
      * Sets up this Game.
      * @param setEmail the player's email (from Firebase)
@@ -120,13 +123,52 @@ public abstract class Game {
         // No-op unless doing the apocryphal Checkpoint 5
     }
 
+    /**
+     * Stops any background work the game started and detaches any listeners or overlays it added to the map.
+     * Called once the game is left; it isn't used after that.
+     */
+    @CallSuper
+    public void close() {
+        // Nothing to stop unless a subclass started something
+    }
+
     /**
      * Gets a team's score.
-     * @param teamId the team ID
+     * @param teamId the team ID, or TeamID.OBSERVER to count objectives nobody has captured
      * @return how many objectives the team has captured
      */
     public abstract int getTeamScore(int teamId);
 
+    /**
+     * Records that an objective changed hands, updating the running scores.
+     * <p>
+     * Subclasses that don't already count their objectives by owner (as AreaGame's CellOwnership does) call
+     * this whenever an objective's owner is loaded or changed, so that scores can be looked up without counting
+     * every objective. Uncaptured objectives aren't counted.
+     * @param oldTeam the team that owned the objective, or TeamID.OBSERVER if it wasn't captured
+     * @param newTeam the team that now owns the objective
+     */
+    protected final void moveScore(final int oldTeam, final int newTeam) {
+        if (oldTeam >= MIN_TEAM && oldTeam <= MAX_TEAM) {
+            teamScores[oldTeam]--;
+        }
+        if (newTeam >= MIN_TEAM && newTeam <= MAX_TEAM) {
+            teamScores[newTeam]++;
+        }
+    }
+
+    /**
+     * Gets a team's running score, as recorded by moveScore.
+     * @param teamId the team ID
+     * @return how many objectives the team owns, or 0 if the team ID is invalid
+     */
+    protected final int getRecordedScore(final int teamId) {
+        if (teamId < MIN_TEAM || teamId > MAX_TEAM) {
+            return 0;
+        }
+        return teamScores[teamId];
+    }
+
     /**
      * Determines which team has the most points.
      * <p>
@@ -0,0 +1,159 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Holds allocation-free static methods for distances between locations given as primitive coordinates.
+ * <p>
+ * The flat-Earth distance here is the same formula as LatLngUtils.distance, with the same constants, but it
+ * takes plain doubles instead of LatLngs, and comparisons against a range skip the square root. The batch
+ * methods write their results into arrays the caller provides, so nothing is allocated per query.
+ */
+public final class GeoMath {
+
+    /** Tolerance for LatLng-related double comparisons (the same as LatLngUtils uses). */
+    static final double COMPARE_EPSILON = 0.0000001;
+
+    /** Meters per degree of latitude. */
+    static final double LAT_DISTANCE_SCALE = 110574;
+
+    /** Meters per degree of longitude at the equator. */
+    static final double LNG_DISTANCE_SCALE = 111320;
+
+    /** Factor to convert degrees to radians. */
+    static final double DEG_TO_RAD = Math.PI / 180;
+
+    /** Mean radius of the Earth in meters, for great-circle distances. */
+    static final double EARTH_RADIUS = 6371008.8;
+
+    /**
+     * Private constructor to prevent creating instances.
+     */
+    private GeoMath() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Computes the distance between two points.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance between the two points, in meters
+     */
+    public static double distance(final double oneLat, final double oneLng,
+                                  final double anotherLat, final double anotherLng) {
+        return Math.sqrt(distanceSquared(oneLat, oneLng, anotherLat, anotherLng));
+    }
+
+    /**
+     * Computes the square of the distance between two points.
+     * <p>
+     * This is cheaper than distance since it skips the square root, and it orders pairs of points the same way.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the squared distance between the two points, in square meters
+     */
+    public static double distanceSquared(final double oneLat, final double oneLng,
+                                         final double anotherLat, final double anotherLng) {
+        double latRadians = DEG_TO_RAD * oneLat;
+        double latDistance = LAT_DISTANCE_SCALE * (oneLat - anotherLat);
+        double lngDistance = LNG_DISTANCE_SCALE * (oneLng - anotherLng) * Math.cos(latRadians);
+        return latDistance * latDistance + lngDistance * lngDistance;
+    }
+
+    /**
+     * Computes the great-circle distance between two points with the haversine formula.
+     * <p>
+     * This is accurate at any distance and latitude, unlike distance, but needs several trigonometric calls.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance between the two points along the surface of a spherical Earth, in meters
+     */
+    public static double haversineDistance(final double oneLat, final double oneLng,
+                                           final double anotherLat, final double anotherLng) {
+        double latSine = Math.sin(DEG_TO_RAD * (anotherLat - oneLat) / 2);
+        double lngSine = Math.sin(DEG_TO_RAD * (anotherLng - oneLng) / 2);
+        double a = latSine * latSine
+                + Math.cos(DEG_TO_RAD * oneLat) * Math.cos(DEG_TO_RAD * anotherLat) * lngSine * lngSine;
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+
+    /**
+     * Determines whether two points are within the specified distance of each other.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @param range the maximum distance, in meters
+     * @return whether the distance between the points is no more than the range (never for a negative range)
+     */
+    public static boolean withinRange(final double oneLat, final double oneLng,
+                                      final double anotherLat, final double anotherLng, final double range) {
+        return range >= 0 && distanceSquared(oneLat, oneLng, anotherLat, anotherLng) <= range * range;
+    }
+
+    /**
+     * Computes the distance from each of several points to one other point.
+     * <p>
+     * Nothing is allocated; results are written into the caller's array.
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points (same order as latitudes)
+     * @param otherLat the latitude of the point to measure to
+     * @param otherLng the longitude of the point to measure to
+     * @param distances array to receive each point's distance in meters (at least as long as latitudes)
+     */
+    public static void distances(final double[] latitudes, final double[] longitudes,
+                                 final double otherLat, final double otherLng, final double[] distances) {
+        squaredDistances(latitudes, longitudes, otherLat, otherLng, distances);
+        for (int i = 0; i < latitudes.length; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+    }
+
+    /**
+     * Computes the squared distance from each of several points to one other point.
+     * <p>
+     * Nothing is allocated; results are written into the caller's array.
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points (same order as latitudes)
+     * @param otherLat the latitude of the point to measure to
+     * @param otherLng the longitude of the point to measure to
+     * @param squaredDistances array to receive each point's squared distance (at least as long as latitudes)
+     */
+    public static void squaredDistances(final double[] latitudes, final double[] longitudes,
+                                        final double otherLat, final double otherLng,
+                                        final double[] squaredDistances) {
+        for (int i = 0; i < latitudes.length; i++) {
+            squaredDistances[i] = distanceSquared(latitudes[i], longitudes[i], otherLat, otherLng);
+        }
+    }
+
+    /**
+     * Determines which of several points are within the specified distance of one other point.
+     * <p>
+     * Nothing is allocated; results are written into the caller's array.
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points (same order as latitudes)
+     * @param otherLat the latitude of the point to measure to
+     * @param otherLng the longitude of the point to measure to
+     * @param range the maximum distance, in meters
+     * @param inRange array to receive whether each point is within range (at least as long as latitudes)
+     * @return how many of the points are within range
+     */
+    public static int withinRange(final double[] latitudes, final double[] longitudes,
+                                  final double otherLat, final double otherLng, final double range,
+                                  final boolean[] inRange) {
+        int count = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            inRange[i] = withinRange(latitudes[i], longitudes[i], otherLat, otherLng, range);
+            if (inRange[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
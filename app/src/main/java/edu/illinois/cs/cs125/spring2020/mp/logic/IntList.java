@@ -0,0 +1,81 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ * <p>
+ * Unlike a List of Integer, adding and reading elements never allocates (except when the backing array has to
+ * grow), so it is suitable for indexes that are updated and queried on every location update.
+ */
+public final class IntList {
+
+    /** Capacity of a new list. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** The backing array. */
+    private int[] elements = new int[INITIAL_CAPACITY];
+
+    /** The number of elements in use. */
+    private int size;
+
+    /**
+     * Adds an element to the end of the list.
+     * @param element the value to add
+     */
+    public void add(final int element) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size] = element;
+        size++;
+    }
+
+    /**
+     * Gets an element of the list.
+     * @param index the index of the element
+     * @return the value at that index
+     */
+    public int get(final int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return elements[index];
+    }
+
+    /**
+     * Removes the last element of the list, so it can be used as a stack.
+     * @return the value that was last
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("List is empty");
+        }
+        size--;
+        return elements[size];
+    }
+
+    /**
+     * Gets the number of elements in the list.
+     * @return the size of the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines whether the list has no elements.
+     * @return whether the list is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all elements from the list, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+}
@@ -6,6 +6,9 @@ import com.google.android.gms.maps.model.LatLng;
  * Holds a method to determine whether two lines cross.
  * <p>
  * The implementation given here works. You do not need to change it.
+ * <p>
+ * The check is the orientation test in {@link SegmentMath}, which needs no slopes or special cases for
+ * vertical lines and doesn't allocate.
  */
 public class LineCrossDetector {
 
@@ -19,79 +22,11 @@ public class LineCrossDetector {
      */
     public static boolean linesCross(final LatLng firstStart, final LatLng firstEnd,
                                      final LatLng secondStart, final LatLng secondEnd) {
-        if (LatLngUtils.same(firstEnd, secondStart) || LatLngUtils.same(secondEnd, firstStart)
-                || LatLngUtils.same(firstStart, secondStart) || LatLngUtils.same(firstEnd, secondEnd)) {
-            // The lines are just touching, not crossing each other
-            return false;
-        }
-
-        boolean firstVertical = LatLngUtils.same(firstStart.longitude, firstEnd.longitude);
-        boolean secondVertical = LatLngUtils.same(secondStart.longitude, secondEnd.longitude);
-        if (firstVertical && secondVertical) {
-            // They're parallel vertical lines
-            return false;
-        } else if (firstVertical) {
-            return lineCrossesVertical(firstStart, firstEnd, secondStart, secondEnd);
-        } else if (secondVertical) {
-            return lineCrossesVertical(secondStart, secondEnd, firstStart, firstEnd);
-        }
-
-        double firstSlope = lineSlope(firstStart, firstEnd);
-        double secondSlope = lineSlope(secondStart, secondEnd);
-        if (LatLngUtils.same(firstSlope, secondSlope)) {
-            // They're parallel
-            return false;
-        }
-
-        double firstIntercept = firstStart.latitude - firstSlope * firstStart.longitude;
-        double secondIntercept = secondStart.latitude - secondSlope * secondStart.longitude;
-        double intersectionX = -(firstIntercept - secondIntercept) / (firstSlope - secondSlope);
-        if (LatLngUtils.same(intersectionX, firstStart.longitude)
-                || LatLngUtils.same(intersectionX, firstEnd.longitude)
-                || LatLngUtils.same(intersectionX, secondStart.longitude)
-                || LatLngUtils.same(intersectionX, secondEnd.longitude)) {
-            // Endpoint of one line is in the middle of the other line
-            return true;
-        }
-        boolean onFirst = intersectionX > Math.min(firstStart.longitude, firstEnd.longitude)
-                && intersectionX < Math.max(firstStart.longitude, firstEnd.longitude);
-        boolean onSecond = intersectionX > Math.min(secondStart.longitude, secondEnd.longitude)
-                && intersectionX < Math.max(secondStart.longitude, secondEnd.longitude);
-        return onFirst && onSecond;
-    }
-
-    /**
-     * Determines if a non-vertical line crosses a vertical line.
-     * @param verticalStart one endpoint of the vertical line
-     * @param verticalEnd the other endpoint of the vertical line (same longitude as verticalStart)
-     * @param lineStart one endpoint of the non-vertical line
-     * @param lineEnd the other endpoint of the non-vertical line
-     * @return whether the lines cross
-     */
-    private static boolean lineCrossesVertical(final LatLng verticalStart, final LatLng verticalEnd,
-                                               final LatLng lineStart, final LatLng lineEnd) {
-        if (Math.max(lineStart.longitude, lineEnd.longitude) < verticalStart.longitude
-                || Math.min(lineStart.longitude, lineEnd.longitude) > verticalStart.longitude) {
-            return false;
-        }
-        double slope = lineSlope(lineStart, lineEnd);
-        double yAtVert = slope * (verticalStart.longitude - lineStart.longitude) + lineStart.latitude;
-        if (LatLngUtils.same(yAtVert, verticalStart.latitude) || LatLngUtils.same(yAtVert, verticalEnd.latitude)) {
-            // Ends on the middle of the non-vertical line
-            return true;
-        }
-        return yAtVert > Math.min(verticalStart.latitude, verticalEnd.latitude)
-                && yAtVert < Math.max(verticalStart.latitude, verticalEnd.latitude);
-    }
-
-    /**
-     * Determines the slope of a non-vertical line.
-     * @param start one endpoint of the line
-     * @param end the other endpoint
-     * @return the slope, treating longitude as X and latitude as Y
-     */
-    private static double lineSlope(final LatLng start, final LatLng end) {
-        return (end.latitude - start.latitude) / (end.longitude - start.longitude);
+        return SegmentMath.crossesFromOrigin(firstEnd.latitude - firstStart.latitude,
+                firstEnd.longitude - firstStart.longitude,
+                secondStart.latitude - firstStart.latitude, secondStart.longitude - firstStart.longitude,
+                secondEnd.latitude - firstStart.latitude, secondEnd.longitude - firstStart.longitude,
+                GeoMath.COMPARE_EPSILON);
     }
 
 }
@@ -0,0 +1,202 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Represents a local planar projection of the area a game is played in.
+ * <p>
+ * A game covers at most a few square kilometers around one latitude, so the cosine of that latitude and the
+ * degree-to-meter scale factors can be computed once when the game is loaded. Coordinates are then converted
+ * into meters east (X) and north (Y) of the southwest corner of the game area, and distances between points
+ * need only a few multiplications and additions.
+ * <p>
+ * Since the projection is linear, it does not change whether two line segments cross. Segments can therefore
+ * be checked for crossing with SegmentMath directly in projected coordinates.
+ */
+public final class LocalFrame {
+
+    /** Latitude of the origin (the southern edge of the area). */
+    private final double originLatitude;
+
+    /** Longitude of the origin (the western edge of the area). */
+    private final double originLongitude;
+
+    /** Meters per degree of latitude. */
+    private final double metersPerLatitude;
+
+    /** Meters per degree of longitude at the middle latitude of the area. */
+    private final double metersPerLongitude;
+
+    /**
+     * Creates a frame covering the specified area.
+     * @param north the maximum latitude of the area
+     * @param east the maximum longitude of the area
+     * @param south the minimum latitude of the area
+     * @param west the minimum longitude of the area
+     */
+    public LocalFrame(final double north, final double east, final double south, final double west) {
+        originLatitude = south;
+        originLongitude = west;
+        metersPerLatitude = GeoMath.LAT_DISTANCE_SCALE;
+        metersPerLongitude = GeoMath.LNG_DISTANCE_SCALE
+                * Math.cos(GeoMath.DEG_TO_RAD * (north + south) / 2);
+    }
+
+    /**
+     * Creates a frame covering the extents of a set of points, such as the targets of a target mode game.
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points (same order as latitudes)
+     * @return a frame whose origin is the southwest corner of the points' bounding box
+     */
+    public static LocalFrame forPoints(final double[] latitudes, final double[] longitudes) {
+        if (latitudes.length == 0) {
+            return new LocalFrame(0, 0, 0, 0);
+        }
+        double north = latitudes[0];
+        double south = latitudes[0];
+        double east = longitudes[0];
+        double west = longitudes[0];
+        for (int i = 1; i < latitudes.length; i++) {
+            north = Math.max(north, latitudes[i]);
+            south = Math.min(south, latitudes[i]);
+            east = Math.max(east, longitudes[i]);
+            west = Math.min(west, longitudes[i]);
+        }
+        return new LocalFrame(north, east, south, west);
+    }
+
+    /**
+     * Gets the number of meters in one degree of latitude.
+     * @return the latitude scale factor
+     */
+    public double getMetersPerLatitude() {
+        return metersPerLatitude;
+    }
+
+    /**
+     * Gets the number of meters in one degree of longitude within this frame.
+     * @return the longitude scale factor
+     */
+    public double getMetersPerLongitude() {
+        return metersPerLongitude;
+    }
+
+    /**
+     * Gets how close two projected points must be to count as the same point in crossing checks.
+     * <p>
+     * This is the tolerance of LatLngUtils.same converted to meters, using the smaller of the two scale factors
+     * so that points within it are the same point in both latitude and longitude.
+     * @return the point tolerance for SegmentMath, in meters
+     */
+    public double getPointTolerance() {
+        return GeoMath.COMPARE_EPSILON * Math.min(metersPerLatitude, metersPerLongitude);
+    }
+
+    /**
+     * Projects a longitude into the frame.
+     * @param longitude the longitude
+     * @return meters east of the origin
+     */
+    public double toX(final double longitude) {
+        return (longitude - originLongitude) * metersPerLongitude;
+    }
+
+    /**
+     * Projects a latitude into the frame.
+     * @param latitude the latitude
+     * @return meters north of the origin
+     */
+    public double toY(final double latitude) {
+        return (latitude - originLatitude) * metersPerLatitude;
+    }
+
+    /**
+     * Converts a projected X coordinate back to a longitude.
+     * @param x meters east of the origin
+     * @return the longitude
+     */
+    public double toLongitude(final double x) {
+        return originLongitude + x / metersPerLongitude;
+    }
+
+    /**
+     * Converts a projected Y coordinate back to a latitude.
+     * @param y meters north of the origin
+     * @return the latitude
+     */
+    public double toLatitude(final double y) {
+        return originLatitude + y / metersPerLatitude;
+    }
+
+    /**
+     * Projects a set of points into the frame.
+     * <p>
+     * Nothing is allocated; results are written into the caller's arrays.
+     * @param latitudes the latitudes of the points
+     * @param longitudes the longitudes of the points (same order as latitudes)
+     * @param ys array to receive the projected Y coordinates (at least as long as latitudes)
+     * @param xs array to receive the projected X coordinates (at least as long as latitudes)
+     */
+    public void project(final double[] latitudes, final double[] longitudes, final double[] ys, final double[] xs) {
+        for (int i = 0; i < latitudes.length; i++) {
+            ys[i] = toY(latitudes[i]);
+            xs[i] = toX(longitudes[i]);
+        }
+    }
+
+    /**
+     * Computes the squared distance between two points given as latitude-longitude pairs.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the squared distance between the points, in square meters
+     */
+    public double distanceSquared(final double oneLat, final double oneLng,
+                                  final double anotherLat, final double anotherLng) {
+        double latDistance = (oneLat - anotherLat) * metersPerLatitude;
+        double lngDistance = (oneLng - anotherLng) * metersPerLongitude;
+        return latDistance * latDistance + lngDistance * lngDistance;
+    }
+
+    /**
+     * Computes the distance between two points given as latitude-longitude pairs.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the distance between the points, in meters
+     */
+    public double distance(final double oneLat, final double oneLng,
+                           final double anotherLat, final double anotherLng) {
+        return Math.sqrt(distanceSquared(oneLat, oneLng, anotherLat, anotherLng));
+    }
+
+    /**
+     * Determines whether two points given as latitude-longitude pairs are within a distance of each other.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @param range the maximum distance, in meters
+     * @return whether the points are no more than the range apart (never, if the range is negative)
+     */
+    public boolean withinRange(final double oneLat, final double oneLng,
+                               final double anotherLat, final double anotherLng, final double range) {
+        return range >= 0 && distanceSquared(oneLat, oneLng, anotherLat, anotherLng) <= range * range;
+    }
+
+    /**
+     * Computes the squared distance between two projected points.
+     * @param oneY the Y coordinate of one point
+     * @param oneX the X coordinate of that point
+     * @param anotherY the Y coordinate of another point
+     * @param anotherX the X coordinate of that other point
+     * @return the squared distance between the points, in square meters
+     */
+    public static double planarDistanceSquared(final double oneY, final double oneX,
+                                               final double anotherY, final double anotherX) {
+        double yDistance = oneY - anotherY;
+        double xDistance = oneX - anotherX;
+        return yDistance * yDistance + xDistance * xDistance;
+    }
+
+}
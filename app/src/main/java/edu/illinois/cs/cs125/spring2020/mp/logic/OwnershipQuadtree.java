@@ -0,0 +1,283 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Summarizes who owns an area mode grid's cells at several levels of detail, for drawing zoomed-out views.
+ * <p>
+ * Level 0 is the grid itself. Each node at level k covers a square block of up to 2^k by 2^k cells (smaller
+ * along the north and east edges of the grid), and four nodes of one level make up a node of the next, up to
+ * a single node for the whole grid. Every node knows how many of its cells each team owns, which team owns
+ * the most of them (its dominant team), and whether all of its cells have the same owner. A capture changes
+ * one node per level, so keeping the tree up to date costs a few operations per level.
+ * <p>
+ * Only the team counts of levels 2 and up are stored: a level 1 node is at most four cells, which are read
+ * directly, and the uncaptured cells and the dominant team are worked out from the counts when asked for.
+ * Counts that fit are stored as chars, so the whole tree takes well under a byte per cell, less than the
+ * CellOwnership it summarizes.
+ * <p>
+ * The owners themselves are read from the game's CellOwnership rather than copied, so whoever changes a cell
+ * there must then call {@link #ownerChanged} to update the summaries.
+ */
+public final class OwnershipQuadtree {
+
+    /** Number of teams that can own cells, from TeamID.MIN_TEAM to TeamID.MAX_TEAM. */
+    private static final int TEAMS = TeamID.MAX_TEAM - TeamID.MIN_TEAM + 1;
+
+    /** Lowest level whose counts are stored. Level 1 nodes are counted from their cells when needed. */
+    private static final int FIRST_STORED_LEVEL = 2;
+
+    /** Highest level whose counts are stored as chars: its nodes have at most 4^7 = 16384 cells. */
+    private static final int LAST_CHAR_LEVEL = 7;
+
+    /** Number of cells in the X direction. */
+    private final int xCells;
+
+    /** Number of cells in the Y direction. */
+    private final int yCells;
+
+    /** Team owning each cell, shared with the game. */
+    private final CellOwnership owners;
+
+    /** For each level, the number of nodes in the X direction. */
+    private final int[] widths;
+
+    /** For each level, the number of nodes in the Y direction. */
+    private final int[] heights;
+
+    /** For levels 2 through 7, how many cells of each node each team owns (TEAMS counts per node). */
+    private final char[][] charCounts;
+
+    /** For levels above 7, how many cells of each node each team owns (TEAMS counts per node). */
+    private final int[][] intCounts;
+
+    /**
+     * Creates a tree summarizing a grid's cell owners.
+     * <p>
+     * The cells are read once to count the lowest stored level, and each level above is added up from the
+     * one below it.
+     * @param setOwners the team owning each cell, which the caller keeps updating
+     */
+    public OwnershipQuadtree(final CellOwnership setOwners) {
+        owners = setOwners;
+        xCells = setOwners.getXCells();
+        yCells = setOwners.getYCells();
+        int levels = 1;
+        while ((xCells - 1) >> (levels - 1) > 0 || (yCells - 1) >> (levels - 1) > 0) {
+            levels++;
+        }
+        widths = new int[levels];
+        heights = new int[levels];
+        charCounts = new char[levels][];
+        intCounts = new int[levels][];
+        for (int level = 0; level < levels; level++) {
+            widths[level] = ((xCells - 1) >> level) + 1;
+            heights[level] = ((yCells - 1) >> level) + 1;
+            if (level < FIRST_STORED_LEVEL) {
+                continue;
+            }
+            int nodes = widths[level] * heights[level];
+            if (level <= LAST_CHAR_LEVEL) {
+                charCounts[level] = new char[nodes * TEAMS];
+            } else {
+                intCounts[level] = new int[nodes * TEAMS];
+            }
+            if (level == FIRST_STORED_LEVEL) {
+                for (int y = 0; y < yCells; y++) {
+                    for (int x = 0; x < xCells; x++) {
+                        int team = owners.get(x, y);
+                        if (team != TeamID.OBSERVER) {
+                            addCount(level, x >> level, y >> level, team, 1);
+                        }
+                    }
+                }
+            } else {
+                for (int y = 0; y < heights[level - 1]; y++) {
+                    for (int x = 0; x < widths[level - 1]; x++) {
+                        for (int team = TeamID.MIN_TEAM; team <= TeamID.MAX_TEAM; team++) {
+                            addCount(level, x >> 1, y >> 1, team, getCount(level - 1, x, y, team));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the nodes containing a cell after its owner was changed in the CellOwnership.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param old the team that owned the cell before, or TeamID.OBSERVER if it wasn't captured
+     */
+    public void ownerChanged(final int x, final int y, final int old) {
+        int team = owners.get(x, y);
+        if (old == team) {
+            return;
+        }
+        for (int level = FIRST_STORED_LEVEL; level < widths.length; level++) {
+            if (old != TeamID.OBSERVER) {
+                addCount(level, x >> level, y >> level, old, -1);
+            }
+            if (team != TeamID.OBSERVER) {
+                addCount(level, x >> level, y >> level, team, 1);
+            }
+        }
+    }
+
+    /**
+     * Gets the team owning a cell.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the owning team, or TeamID.OBSERVER if the cell isn't captured
+     */
+    public int getOwner(final int x, final int y) {
+        return owners.get(x, y);
+    }
+
+    /**
+     * Gets the number of levels, including level 0 (the cells) and the top level (one node).
+     * @return the number of levels
+     */
+    public int getLevels() {
+        return widths.length;
+    }
+
+    /**
+     * Gets the number of nodes in the X direction at a level.
+     * @param level the level
+     * @return the number of nodes across
+     */
+    public int getWidth(final int level) {
+        return widths[level];
+    }
+
+    /**
+     * Gets the number of nodes in the Y direction at a level.
+     * @param level the level
+     * @return the number of nodes down
+     */
+    public int getHeight(final int level) {
+        return heights[level];
+    }
+
+    /**
+     * Gets the team owning the most cells of a node. Captured cells outnumber uncaptured ones however few
+     * there are; ties between teams go to the lower team ID.
+     * @param level the level
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @return the dominant team, or TeamID.OBSERVER if none of the node's cells are captured
+     */
+    public int getDominantTeam(final int level, final int x, final int y) {
+        if (level == 0) {
+            return getOwner(x, y);
+        }
+        int best = TeamID.OBSERVER;
+        int bestCount = 0;
+        for (int team = TeamID.MIN_TEAM; team <= TeamID.MAX_TEAM; team++) {
+            int count = getCount(level, x, y, team);
+            if (count > bestCount) {
+                best = team;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Determines whether all of a node's cells have the same owner.
+     * @param level the level
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @return whether the node is uniform (always true at level 0)
+     */
+    public boolean isUniform(final int level, final int x, final int y) {
+        if (level == 0) {
+            return true;
+        }
+        return getCount(level, x, y, getDominantTeam(level, x, y)) == nodeCells(level, x, y);
+    }
+
+    /**
+     * Gets how many of a node's cells a team owns.
+     * @param level the level
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @param team the team, or TeamID.OBSERVER for uncaptured cells
+     * @return the number of cells
+     */
+    public int getCount(final int level, final int x, final int y, final int team) {
+        if (team == TeamID.OBSERVER && level > 0) {
+            int uncaptured = nodeCells(level, x, y);
+            for (int owner = TeamID.MIN_TEAM; owner <= TeamID.MAX_TEAM; owner++) {
+                uncaptured -= getCount(level, x, y, owner);
+            }
+            return uncaptured;
+        }
+        if (level < FIRST_STORED_LEVEL) {
+            int count = 0;
+            for (int cellY = y << level; cellY < Math.min(yCells, (y + 1) << level); cellY++) {
+                for (int cellX = x << level; cellX < Math.min(xCells, (x + 1) << level); cellX++) {
+                    if (owners.get(cellX, cellY) == team) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+        int index = (y * widths[level] + x) * TEAMS + team - TeamID.MIN_TEAM;
+        if (level <= LAST_CHAR_LEVEL) {
+            return charCounts[level][index];
+        }
+        return intCounts[level][index];
+    }
+
+    /**
+     * Picks the most detailed level at which a block of cells is covered by at most a number of nodes.
+     * @param minX the X index of the block's westernmost cells
+     * @param minY the Y index of the block's southernmost cells
+     * @param maxX the X index of the block's easternmost cells
+     * @param maxY the Y index of the block's northernmost cells
+     * @param maxNodes the most nodes to draw
+     * @return the level, or the top level if even that has too many nodes
+     */
+    public int levelFor(final int minX, final int minY, final int maxX, final int maxY, final int maxNodes) {
+        int level = 0;
+        while (level < widths.length - 1
+                && (long) ((maxX >> level) - (minX >> level) + 1) * ((maxY >> level) - (minY >> level) + 1)
+                > maxNodes) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * HELPER FUNCTION: changes a team's stored count for a node.
+     * @param level the level, which must be stored
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @param team the team (not TeamID.OBSERVER)
+     * @param change the number of cells to add, negative to remove
+     */
+    private void addCount(final int level, final int x, final int y, final int team, final int change) {
+        int index = (y * widths[level] + x) * TEAMS + team - TeamID.MIN_TEAM;
+        if (level <= LAST_CHAR_LEVEL) {
+            charCounts[level][index] += change;
+        } else {
+            intCounts[level][index] += change;
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: gets the number of cells in a node, which is smaller along the grid's north and east
+     * edges.
+     * @param level the level
+     * @param x the node's X index at that level
+     * @param y the node's Y index at that level
+     * @return the number of cells in the grid covered by the node
+     */
+    private int nodeCells(final int level, final int x, final int y) {
+        int across = Math.min(xCells, (x + 1) << level) - (x << level);
+        int down = Math.min(yCells, (y + 1) << level) - (y << level);
+        return across * down;
+    }
+
+}
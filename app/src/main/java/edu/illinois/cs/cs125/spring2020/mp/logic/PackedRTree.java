@@ -0,0 +1,431 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A static R-tree over points or line segments, bulk-loaded with the Sort-Tile-Recursive (STR) algorithm.
+ * <p>
+ * STR sorts the entries into vertical slices by X, then sorts each slice by Y and packs runs of entries into
+ * nodes, repeating level by level until one root node is left. Every node is full except the last of each
+ * level, and nodes near each other on the map end up near each other in the tree, so the tree adapts to
+ * unevenly spread data (such as clusters of targets) where a uniform grid would have crowded cells.
+ * <p>
+ * Entries can't be added after the tree is built. Queries write the indexes of matching entries into an
+ * array supplied by the caller and do not allocate. Since the traversal stack is reused, instances are not
+ * thread-safe.
+ */
+public final class PackedRTree {
+
+    /** Maximum number of children of each node. */
+    private static final int NODE_CAPACITY = 8;
+
+    /** Query mode: entries whose bounding boxes overlap a box. */
+    private static final int MODE_BOX = 0;
+
+    /** Query mode: entries whose bounding boxes a line passes through. */
+    private static final int MODE_LINE = 1;
+
+    /** Query mode: entries whose bounding boxes are within a distance of a point. */
+    private static final int MODE_NEAR = 2;
+
+    /** Minimum Y coordinate of each entry's bounding box. */
+    private final double[] entryMinY;
+
+    /** Minimum X coordinate of each entry's bounding box. */
+    private final double[] entryMinX;
+
+    /** Maximum Y coordinate of each entry's bounding box. */
+    private final double[] entryMaxY;
+
+    /** Maximum X coordinate of each entry's bounding box. */
+    private final double[] entryMaxX;
+
+    /** Entry indexes in tree order; each leaf node covers a run of this array. */
+    private final int[] entryOrder;
+
+    /** Node indexes in tree order; each non-leaf node covers a run of this array. */
+    private final int[] childOrder;
+
+    /** Minimum Y coordinate of each node's bounding box. */
+    private final double[] nodeMinY;
+
+    /** Minimum X coordinate of each node's bounding box. */
+    private final double[] nodeMinX;
+
+    /** Maximum Y coordinate of each node's bounding box. */
+    private final double[] nodeMaxY;
+
+    /** Maximum X coordinate of each node's bounding box. */
+    private final double[] nodeMaxX;
+
+    /** Start of each node's run in entryOrder (for leaves) or childOrder (for other nodes). */
+    private final int[] nodeFirst;
+
+    /** Number of children of each node. */
+    private final int[] nodeCount;
+
+    /** Number of leaf nodes, which come first in the node arrays. */
+    private final int leafCount;
+
+    /** Index of the root node, or -1 if the tree is empty. */
+    private final int root;
+
+    /** Stack of nodes still to visit during a query. */
+    private final int[] stack;
+
+    /** The current query's mode. */
+    private int queryMode;
+
+    /** The current query's minimum Y (box), start Y (line), or center Y (near). */
+    private double queryY;
+
+    /** The current query's minimum X (box), start X (line), or center X (near). */
+    private double queryX;
+
+    /** The current query's maximum Y (box), end Y (line), or squared range (near). */
+    private double queryOtherY;
+
+    /** The current query's maximum X (box) or end X (line). */
+    private double queryOtherX;
+
+    /** The current crossing query's point tolerance (see SegmentMath). */
+    private double queryTolerance;
+
+    /**
+     * Builds a tree over some bounding boxes.
+     * @param minYs the minimum Y coordinate of each entry
+     * @param minXs the minimum X coordinate of each entry
+     * @param maxYs the maximum Y coordinate of each entry
+     * @param maxXs the maximum X coordinate of each entry
+     */
+    private PackedRTree(final double[] minYs, final double[] minXs, final double[] maxYs, final double[] maxXs) {
+        entryMinY = minYs;
+        entryMinX = minXs;
+        entryMaxY = maxYs;
+        entryMaxX = maxXs;
+        int count = minYs.length;
+
+        // Count the nodes on each level to size the arrays
+        int levels = 1;
+        int nodes = divideUp(count, NODE_CAPACITY);
+        for (int levelSize = nodes; levelSize > 1; levelSize = divideUp(levelSize, NODE_CAPACITY)) {
+            nodes += divideUp(levelSize, NODE_CAPACITY);
+            levels++;
+        }
+        nodeMinY = new double[nodes];
+        nodeMinX = new double[nodes];
+        nodeMaxY = new double[nodes];
+        nodeMaxX = new double[nodes];
+        nodeFirst = new int[nodes];
+        nodeCount = new int[nodes];
+        childOrder = new int[Math.max(0, nodes - 1)];
+        stack = new int[levels * NODE_CAPACITY + 1];
+
+        // Leaves hold runs of entries in STR order
+        entryOrder = strOrder(minYs, minXs, maxYs, maxXs, 0, count);
+        leafCount = divideUp(count, NODE_CAPACITY);
+        for (int node = 0; node < leafCount; node++) {
+            int first = node * NODE_CAPACITY;
+            nodeFirst[node] = first;
+            nodeCount[node] = Math.min(NODE_CAPACITY, count - first);
+            nodeMinY[node] = Double.POSITIVE_INFINITY;
+            nodeMinX[node] = Double.POSITIVE_INFINITY;
+            nodeMaxY[node] = Double.NEGATIVE_INFINITY;
+            nodeMaxX[node] = Double.NEGATIVE_INFINITY;
+            for (int i = first; i < first + nodeCount[node]; i++) {
+                int entry = entryOrder[i];
+                nodeMinY[node] = Math.min(nodeMinY[node], minYs[entry]);
+                nodeMinX[node] = Math.min(nodeMinX[node], minXs[entry]);
+                nodeMaxY[node] = Math.max(nodeMaxY[node], maxYs[entry]);
+                nodeMaxX[node] = Math.max(nodeMaxX[node], maxXs[entry]);
+            }
+        }
+
+        // Each higher level holds runs of the level below in STR order
+        int levelStart = 0;
+        int levelSize = leafCount;
+        int nextNode = leafCount;
+        while (levelSize > 1) {
+            int[] order = strOrder(nodeMinY, nodeMinX, nodeMaxY, nodeMaxX, levelStart, levelSize);
+            for (int i = 0; i < levelSize; i++) {
+                childOrder[levelStart + i] = levelStart + order[i];
+            }
+            int parents = divideUp(levelSize, NODE_CAPACITY);
+            for (int p = 0; p < parents; p++) {
+                int node = nextNode + p;
+                int first = levelStart + p * NODE_CAPACITY;
+                nodeFirst[node] = first;
+                nodeCount[node] = Math.min(NODE_CAPACITY, levelStart + levelSize - first);
+                nodeMinY[node] = Double.POSITIVE_INFINITY;
+                nodeMinX[node] = Double.POSITIVE_INFINITY;
+                nodeMaxY[node] = Double.NEGATIVE_INFINITY;
+                nodeMaxX[node] = Double.NEGATIVE_INFINITY;
+                for (int i = first; i < first + nodeCount[node]; i++) {
+                    int child = childOrder[i];
+                    nodeMinY[node] = Math.min(nodeMinY[node], nodeMinY[child]);
+                    nodeMinX[node] = Math.min(nodeMinX[node], nodeMinX[child]);
+                    nodeMaxY[node] = Math.max(nodeMaxY[node], nodeMaxY[child]);
+                    nodeMaxX[node] = Math.max(nodeMaxX[node], nodeMaxX[child]);
+                }
+            }
+            levelStart = nextNode;
+            levelSize = parents;
+            nextNode += parents;
+        }
+        root = nodes - 1;
+    }
+
+    /**
+     * Builds a tree over a set of points.
+     * @param ys the Y coordinates of the points
+     * @param xs the X coordinates of the points (same order as ys)
+     * @return a tree whose entry indexes are the point indexes
+     */
+    public static PackedRTree forPoints(final double[] ys, final double[] xs) {
+        return new PackedRTree(ys.clone(), xs.clone(), ys.clone(), xs.clone());
+    }
+
+    /**
+     * Builds a tree over a set of segments.
+     * @param segments a flat segment array (see {@link SegmentMath#SEGMENT_STRIDE})
+     * @param count how many segments to use from the array
+     * @return a tree whose entry indexes are the segment indexes
+     */
+    public static PackedRTree forSegments(final double[] segments, final int count) {
+        double[] minYs = new double[count];
+        double[] minXs = new double[count];
+        double[] maxYs = new double[count];
+        double[] maxXs = new double[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * SegmentMath.SEGMENT_STRIDE;
+            double startY = segments[offset + SegmentMath.START_Y];
+            double startX = segments[offset + SegmentMath.START_X];
+            double endY = segments[offset + SegmentMath.END_Y];
+            double endX = segments[offset + SegmentMath.END_X];
+            minYs[i] = Math.min(startY, endY);
+            minXs[i] = Math.min(startX, endX);
+            maxYs[i] = Math.max(startY, endY);
+            maxXs[i] = Math.max(startX, endX);
+        }
+        return new PackedRTree(minYs, minXs, maxYs, maxXs);
+    }
+
+    /**
+     * Gets the number of entries in the tree.
+     * @return how many points or segments the tree was built from
+     */
+    public int size() {
+        return entryOrder.length;
+    }
+
+    /**
+     * Finds the entries whose bounding boxes overlap a box.
+     * @param minY the minimum Y coordinate of the box
+     * @param minX the minimum X coordinate of the box
+     * @param maxY the maximum Y coordinate of the box
+     * @param maxX the maximum X coordinate of the box
+     * @param results array to receive the matching entry indexes, in no particular order
+     * @return the number of matches (only as many as fit are stored in results)
+     */
+    public int searchBox(final double minY, final double minX, final double maxY, final double maxX,
+                         final int[] results) {
+        queryMode = MODE_BOX;
+        queryY = minY;
+        queryX = minX;
+        queryOtherY = maxY;
+        queryOtherX = maxX;
+        return search(results, null);
+    }
+
+    /**
+     * Finds the entries whose bounding boxes a line passes through.
+     * <p>
+     * For a tree of segments, these are the only segments the line could cross.
+     * @param startY the Y coordinate of an endpoint of the line
+     * @param startX the X coordinate of that endpoint
+     * @param endY the Y coordinate of the other endpoint
+     * @param endX the X coordinate of that other endpoint
+     * @param results array to receive the matching entry indexes, in no particular order
+     * @return the number of matches (only as many as fit are stored in results)
+     */
+    public int searchLine(final double startY, final double startX, final double endY, final double endX,
+                          final int[] results) {
+        queryMode = MODE_LINE;
+        queryY = startY;
+        queryX = startX;
+        queryOtherY = endY;
+        queryOtherX = endX;
+        return search(results, null);
+    }
+
+    /**
+     * Finds the entries whose bounding boxes are within a distance of a point.
+     * <p>
+     * For a tree of points, these are exactly the points within that distance.
+     * @param y the Y coordinate of the point
+     * @param x the X coordinate of the point
+     * @param range the maximum distance
+     * @param results array to receive the matching entry indexes, in no particular order
+     * @return the number of matches (only as many as fit are stored in results)
+     */
+    public int searchNear(final double y, final double x, final double range, final int[] results) {
+        queryMode = MODE_NEAR;
+        queryY = y;
+        queryX = x;
+        queryOtherY = range * range;
+        return search(results, null);
+    }
+
+    /**
+     * Finds a segment that a line crosses, in a tree built by {@link #forSegments}.
+     * <p>
+     * Unlike {@link #searchLine}, this stops at the first crossing found, so nearby segments don't all have to
+     * be collected first.
+     * @param segments the flat segment array the tree was built from
+     * @param startY the Y coordinate of an endpoint of the line
+     * @param startX the X coordinate of that endpoint
+     * @param endY the Y coordinate of the other endpoint
+     * @param endX the X coordinate of that other endpoint
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     *                       (see {@link LocalFrame#getPointTolerance()})
+     * @return the index of a crossed segment, or -1 if the line crosses none
+     */
+    public int firstCrossing(final double[] segments, final double startY, final double startX,
+                             final double endY, final double endX, final double pointTolerance) {
+        queryMode = MODE_LINE;
+        queryY = startY;
+        queryX = startX;
+        queryOtherY = endY;
+        queryOtherX = endX;
+        queryTolerance = pointTolerance;
+        return search(null, segments);
+    }
+
+    /**
+     * Walks the tree for the current query.
+     * @param results array to receive the matching entry indexes, or null when looking for a crossing
+     * @param crossSegments the segments to check the query line against, or null to collect all matches
+     * @return the number of matches, or when looking for a crossing, the crossed segment or -1
+     */
+    private int search(final int[] results, final double[] crossSegments) {
+        int found = 0;
+        int top = 0;
+        if (root >= 0) {
+            stack[0] = root;
+            top = 1;
+        }
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            int first = nodeFirst[node];
+            int last = first + nodeCount[node];
+            if (node < leafCount) {
+                for (int i = first; i < last; i++) {
+                    int entry = entryOrder[i];
+                    if (!matches(entryMinY[entry], entryMinX[entry], entryMaxY[entry], entryMaxX[entry])) {
+                        continue;
+                    }
+                    if (crossSegments != null) {
+                        if (SegmentMath.segmentCrosses(crossSegments, entry,
+                                queryY, queryX, queryOtherY, queryOtherX, queryTolerance)) {
+                            return entry;
+                        }
+                    } else {
+                        if (found < results.length) {
+                            results[found] = entry;
+                        }
+                        found++;
+                    }
+                }
+            } else {
+                for (int i = first; i < last; i++) {
+                    int child = childOrder[i];
+                    if (matches(nodeMinY[child], nodeMinX[child], nodeMaxY[child], nodeMaxX[child])) {
+                        stack[top] = child;
+                        top++;
+                    }
+                }
+            }
+        }
+        if (crossSegments != null) {
+            return -1;
+        }
+        return found;
+    }
+
+    /**
+     * Determines whether a bounding box matches the current query.
+     * @param minY the minimum Y coordinate of the box
+     * @param minX the minimum X coordinate of the box
+     * @param maxY the maximum Y coordinate of the box
+     * @param maxX the maximum X coordinate of the box
+     * @return whether the box could contain a match
+     */
+    private boolean matches(final double minY, final double minX, final double maxY, final double maxX) {
+        if (queryMode == MODE_NEAR) {
+            double yDistance = Math.max(0, Math.max(minY - queryY, queryY - maxY));
+            double xDistance = Math.max(0, Math.max(minX - queryX, queryX - maxX));
+            return yDistance * yDistance + xDistance * xDistance <= queryOtherY;
+        } else if (queryMode == MODE_BOX) {
+            return minY <= queryOtherY && maxY >= queryY && minX <= queryOtherX && maxX >= queryX;
+        }
+        if (minY > Math.max(queryY, queryOtherY) || maxY < Math.min(queryY, queryOtherY)
+                || minX > Math.max(queryX, queryOtherX) || maxX < Math.min(queryX, queryOtherX)) {
+            return false;
+        }
+        // Reject boxes entirely on one side of the line, with the same tolerance SegmentMath uses
+        double lineY = queryOtherY - queryY;
+        double lineX = queryOtherX - queryX;
+        double tolerance = GeoMath.COMPARE_EPSILON * (Math.abs(lineX) + Math.abs(lineY));
+        double lowLeft = lineX * (minY - queryY) - lineY * (minX - queryX);
+        double lowRight = lineX * (minY - queryY) - lineY * (maxX - queryX);
+        double highLeft = lineX * (maxY - queryY) - lineY * (minX - queryX);
+        double highRight = lineX * (maxY - queryY) - lineY * (maxX - queryX);
+        return Math.min(Math.min(lowLeft, lowRight), Math.min(highLeft, highRight)) <= tolerance
+                && Math.max(Math.max(lowLeft, lowRight), Math.max(highLeft, highRight)) >= -tolerance;
+    }
+
+    /**
+     * Sorts a run of boxes into Sort-Tile-Recursive order.
+     * @param minYs the minimum Y coordinates of the boxes
+     * @param minXs the minimum X coordinates of the boxes
+     * @param maxYs the maximum Y coordinates of the boxes
+     * @param maxXs the maximum X coordinates of the boxes
+     * @param start the index of the first box in the run
+     * @param count the number of boxes in the run
+     * @return offsets from start of the boxes, in tree order
+     */
+    private static int[] strOrder(final double[] minYs, final double[] minXs, final double[] maxYs,
+                                  final double[] maxXs, final int start, final int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // Sum rather than average the box edges; the order is the same
+        Arrays.sort(order, Comparator.comparingDouble(i -> minXs[start + i] + maxXs[start + i]));
+        int slices = (int) Math.ceil(Math.sqrt(divideUp(count, NODE_CAPACITY)));
+        int sliceSize = Math.max(1, slices) * NODE_CAPACITY;
+        for (int first = 0; first < count; first += sliceSize) {
+            Arrays.sort(order, first, Math.min(count, first + sliceSize),
+                    Comparator.comparingDouble(i -> minYs[start + i] + maxYs[start + i]));
+        }
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Divides, rounding up.
+     * @param dividend the non-negative number to divide
+     * @param divisor the positive number to divide by
+     * @return the quotient, rounded up
+     */
+    private static int divideUp(final int dividend, final int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+}
@@ -0,0 +1,89 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Decides whether points are within a fixed distance of each other, such as a game's proximity threshold.
+ * <p>
+ * Everything that depends only on the threshold is computed once when the check is created: the threshold's
+ * extent in degrees of latitude and longitude, and its square. Most points on a map are far outside the
+ * threshold, and they are rejected by comparing coordinate differences against that box. Only points inside
+ * the box have their squared distance computed, and no square root is ever taken.
+ */
+public final class ProximityCheck {
+
+    /**
+     * Relative amount by which the degree box is widened, so that rounding in the conversion to degrees can
+     * never reject a point that the exact distance comparison would accept.
+     */
+    private static final double BOX_MARGIN = 1.000001;
+
+    /** The frame whose scale factors convert degrees to meters. */
+    private final LocalFrame frame;
+
+    /** The threshold distance, in meters. */
+    private final double threshold;
+
+    /** The squared threshold distance. */
+    private final double thresholdSquared;
+
+    /** Half the height of the rejection box, in degrees of latitude. */
+    private final double latitudeRange;
+
+    /** Half the width of the rejection box, in degrees of longitude. */
+    private final double longitudeRange;
+
+    /**
+     * Creates a proximity check.
+     * @param setFrame the frame of the game area, which supplies the degree-to-meter scale factors
+     * @param setThreshold the maximum distance, in meters
+     */
+    public ProximityCheck(final LocalFrame setFrame, final double setThreshold) {
+        frame = setFrame;
+        threshold = setThreshold;
+        thresholdSquared = setThreshold * setThreshold;
+        latitudeRange = setThreshold / frame.getMetersPerLatitude() * BOX_MARGIN;
+        longitudeRange = setThreshold / frame.getMetersPerLongitude() * BOX_MARGIN;
+    }
+
+    /**
+     * Gets the threshold distance.
+     * @return the maximum distance, in meters
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Determines whether two points given as latitude-longitude pairs are within the threshold of each other.
+     * <p>
+     * Gives the same result as {@link LocalFrame#withinRange} on the check's frame.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return whether the points are no more than the threshold apart
+     */
+    public boolean inRange(final double oneLat, final double oneLng,
+                           final double anotherLat, final double anotherLng) {
+        if (Math.abs(oneLat - anotherLat) > latitudeRange || Math.abs(oneLng - anotherLng) > longitudeRange) {
+            return false;
+        }
+        return frame.distanceSquared(oneLat, oneLng, anotherLat, anotherLng) <= thresholdSquared;
+    }
+
+    /**
+     * Determines whether two points projected into the check's frame are within the threshold of each other.
+     * @param oneY the Y coordinate of one point
+     * @param oneX the X coordinate of that point
+     * @param anotherY the Y coordinate of another point
+     * @param anotherX the X coordinate of that other point
+     * @return whether the points are no more than the threshold apart
+     */
+    public boolean inRangeProjected(final double oneY, final double oneX,
+                                    final double anotherY, final double anotherX) {
+        if (Math.abs(oneY - anotherY) > threshold || Math.abs(oneX - anotherX) > threshold) {
+            return false;
+        }
+        return LocalFrame.planarDistanceSquared(oneY, oneX, anotherY, anotherX) <= thresholdSquared;
+    }
+
+}
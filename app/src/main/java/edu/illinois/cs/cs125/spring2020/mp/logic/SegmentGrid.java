@@ -0,0 +1,238 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.Arrays;
+
+/**
+ * A uniform-grid spatial hash of line segments, for finding whether a new segment would cross any existing one.
+ * <p>
+ * The grid covers a rectangle of projected coordinates with its southwest corner at (0, 0), like the area of a
+ * {@link LocalFrame}. Each segment is recorded in every cell it passes through, so a query only has to test the
+ * segments recorded in the cells the query segment passes through. Coordinates outside the rectangle are
+ * clamped into the edge cells, which keeps results correct (just slower) if segments stray outside.
+ * <p>
+ * Segments can be added at any time. Queries do not allocate. Instances are not thread-safe.
+ */
+public final class SegmentGrid {
+
+    /**
+     * Fraction of a cell by which segments are widened when finding their cells, so that a crossing point
+     * exactly on a cell edge is found from both sides despite rounding.
+     */
+    private static final double EDGE_MARGIN = 0.000001;
+
+    /** Side length of each (square) cell, in projected units. */
+    private final double cellSize;
+
+    /** Number of columns of cells (along X). */
+    private final int columns;
+
+    /** Number of rows of cells (along Y). */
+    private final int rows;
+
+    /** Indexes of the segments passing through each cell, in row-major order. Null for cells never used. */
+    private final IntList[] cells;
+
+    /** The stored segments. */
+    private final SegmentSet segments;
+
+    /** For each segment, the number of the last query that tested it, so it is tested only once per query. */
+    private int[] stamps = new int[1];
+
+    /** The number of the current query. */
+    private int queryStamp;
+
+    /**
+     * Creates an empty grid.
+     * @param width the extent of the covered area along X
+     * @param height the extent of the covered area along Y
+     * @param setCellSize the side length of each cell (must be positive)
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point (see
+     *                       {@link LocalFrame#getPointTolerance()})
+     */
+    public SegmentGrid(final double width, final double height, final double setCellSize,
+                       final double pointTolerance) {
+        if (!(setCellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        cellSize = setCellSize;
+        segments = new SegmentSet(SegmentSet.INITIAL_CAPACITY, pointTolerance);
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        cells = new IntList[columns * rows];
+    }
+
+    /**
+     * Creates an empty grid over the area of some points, with about one point per cell.
+     * @param ys the projected Y coordinates of the points (all non-negative)
+     * @param xs the projected X coordinates of the points (same order as ys)
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     * @return a grid covering the points
+     */
+    public static SegmentGrid forPoints(final double[] ys, final double[] xs, final double pointTolerance) {
+        double height = 0;
+        double width = 0;
+        for (int i = 0; i < ys.length; i++) {
+            height = Math.max(height, ys[i]);
+            width = Math.max(width, xs[i]);
+        }
+        double cellSize = Math.max(width, height) / Math.max(1, Math.ceil(Math.sqrt(ys.length)));
+        if (!(cellSize > 0)) {
+            // All the points are in the same place, so one cell is enough
+            cellSize = 1;
+        }
+        return new SegmentGrid(width, height, cellSize, pointTolerance);
+    }
+
+    /**
+     * Adds a segment to the grid.
+     * @param startY the Y coordinate of the segment's start
+     * @param startX the X coordinate of the segment's start
+     * @param endY the Y coordinate of the segment's end
+     * @param endX the X coordinate of the segment's end
+     * @return the index of the new segment
+     */
+    public int add(final double startY, final double startX, final double endY, final double endX) {
+        int segment = segments.add(startY, startX, endY, endX);
+        if (segment == stamps.length) {
+            stamps = Arrays.copyOf(stamps, stamps.length * 2);
+        }
+        visitCells(startY, startX, endY, endX, segment);
+        return segment;
+    }
+
+    /**
+     * Determines whether a line would cross any segment in the grid.
+     * @param startY the Y coordinate of an endpoint of the line
+     * @param startX the X coordinate of that endpoint
+     * @param endY the Y coordinate of the other endpoint
+     * @param endX the X coordinate of that other endpoint
+     * @return whether the line crosses a stored segment
+     */
+    public boolean anyCrosses(final double startY, final double startX, final double endY, final double endX) {
+        queryStamp++;
+        return visitCells(startY, startX, endY, endX, -1);
+    }
+
+    /**
+     * Gets the number of stored segments.
+     * @return how many segments have been added
+     */
+    public int size() {
+        return segments.size();
+    }
+
+    /**
+     * Gets the stored segments. The set is shared with the grid and must not be modified.
+     * @return the set of segments, indexed in the order they were added
+     */
+    public SegmentSet getSegments() {
+        return segments;
+    }
+
+    /**
+     * Walks the cells a segment passes through, column by column.
+     * <p>
+     * Within each column, the rows covered are those between the segment's Y coordinates where it enters and
+     * leaves the column.
+     * @param startY the Y coordinate of the segment's start
+     * @param startX the X coordinate of the segment's start
+     * @param endY the Y coordinate of the segment's end
+     * @param endX the X coordinate of the segment's end
+     * @param adding the index of a segment to record in each cell, or -1 to check each cell's segments instead
+     * @return whether a crossing was found (always false when adding)
+     */
+    private boolean visitCells(final double startY, final double startX, final double endY, final double endX,
+                               final int adding) {
+        double margin = cellSize * EDGE_MARGIN;
+        double minX = Math.min(startX, endX);
+        double maxX = Math.max(startX, endX);
+        int firstColumn = column(minX - margin);
+        int lastColumn = column(maxX + margin);
+        double slope = (endY - startY) / (endX - startX);
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            double lowY;
+            double highY;
+            if (Double.isInfinite(slope) || Double.isNaN(slope) || firstColumn == lastColumn) {
+                lowY = Math.min(startY, endY);
+                highY = Math.max(startY, endY);
+            } else {
+                // The part of the segment within this column (edge columns also take any part beyond the grid)
+                double enterX = minX;
+                if (c > firstColumn) {
+                    enterX = Math.max(minX, c * cellSize);
+                }
+                double leaveX = maxX;
+                if (c < lastColumn) {
+                    leaveX = Math.min(maxX, (c + 1) * cellSize);
+                }
+                double enterY = startY + (enterX - startX) * slope;
+                double leaveY = startY + (leaveX - startX) * slope;
+                lowY = Math.min(enterY, leaveY);
+                highY = Math.max(enterY, leaveY);
+            }
+            int lastRow = row(highY + margin);
+            for (int r = row(lowY - margin); r <= lastRow; r++) {
+                if (visitCell(r * columns + c, startY, startX, endY, endX, adding)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a segment in a cell, or checks a line against the segments recorded there.
+     * @param cell the row-major cell index
+     * @param startY the Y coordinate of the line's start
+     * @param startX the X coordinate of the line's start
+     * @param endY the Y coordinate of the line's end
+     * @param endX the X coordinate of the line's end
+     * @param adding the index of a segment to record, or -1 to check the line instead
+     * @return whether a crossing was found (always false when adding)
+     */
+    private boolean visitCell(final int cell, final double startY, final double startX,
+                              final double endY, final double endX, final int adding) {
+        IntList contents = cells[cell];
+        if (adding >= 0) {
+            if (contents == null) {
+                contents = new IntList();
+                cells[cell] = contents;
+            }
+            contents.add(adding);
+            return false;
+        }
+        if (contents == null) {
+            return false;
+        }
+        for (int i = 0; i < contents.size(); i++) {
+            int segment = contents.get(i);
+            if (stamps[segment] == queryStamp) {
+                continue;
+            }
+            stamps[segment] = queryStamp;
+            if (segments.crosses(segment, startY, startX, endY, endX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the column containing an X coordinate, clamped to the grid.
+     * @param x the X coordinate
+     * @return the column index
+     */
+    private int column(final double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / cellSize)));
+    }
+
+    /**
+     * Finds the row containing a Y coordinate, clamped to the grid.
+     * @param y the Y coordinate
+     * @return the row index
+     */
+    private int row(final double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+    }
+
+}
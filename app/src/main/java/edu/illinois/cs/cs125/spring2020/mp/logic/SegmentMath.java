@@ -0,0 +1,319 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Holds allocation-free static methods for deciding whether line segments cross, given primitive coordinates.
+ * <p>
+ * Crossing is decided with the cross-product orientation test after a bounding box reject, so no slopes or
+ * intercepts are divided out and vertical lines need no special handling. The rules are the same as
+ * LineCrossDetector.linesCross: lines that only share an endpoint are touching, not crossing, parallel lines
+ * never cross, and a line whose endpoint lies on the middle of the other line does cross it.
+ * <p>
+ * Every method works on latitude/longitude or on coordinates projected by a {@link LocalFrame}, since a linear
+ * projection doesn't change whether lines cross. Endpoints closer together than a point tolerance are treated
+ * as the same point, so the tolerance has to be in the coordinates' units: the overloads without one are for
+ * latitude/longitude and use the tolerance of {@link LatLngUtils#same(double, double)}, and projected
+ * coordinates need {@link LocalFrame#getPointTolerance()}. Segments can be given as indexes into coordinate arrays or
+ * as a flat segment array with {@link #SEGMENT_STRIDE} entries per segment.
+ */
+public final class SegmentMath {
+
+    /**
+     * Number of array entries used by each segment in a flat segment array.
+     * Each segment is stored as start latitude (Y), start longitude (X), end latitude (Y), end longitude (X).
+     */
+    public static final int SEGMENT_STRIDE = 4;
+
+    /** Offset of the start latitude (Y) within a segment's entries. */
+    static final int START_Y = 0;
+
+    /** Offset of the start longitude (X) within a segment's entries. */
+    static final int START_X = 1;
+
+    /** Offset of the end latitude (Y) within a segment's entries. */
+    static final int END_Y = 2;
+
+    /** Offset of the end longitude (X) within a segment's entries. */
+    static final int END_X = 3;
+
+    /**
+     * Private constructor to prevent creating instances.
+     */
+    private SegmentMath() {
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Determines whether two lines cross, given the indexes of their endpoints in a pair of coordinate arrays.
+     * @param ys the latitudes (or projected Y coordinates) of all points
+     * @param xs the longitudes (or projected X coordinates) of all points (same order as ys)
+     * @param firstStart the index of an endpoint of one line
+     * @param firstEnd the index of the other endpoint of that line
+     * @param secondStart the index of an endpoint of another line
+     * @param secondEnd the index of the other endpoint of that other line
+     * @return whether the two lines cross
+     */
+    public static boolean linesCross(final double[] ys, final double[] xs,
+                                     final int firstStart, final int firstEnd,
+                                     final int secondStart, final int secondEnd) {
+        return linesCross(ys, xs, firstStart, firstEnd, secondStart, secondEnd, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Determines whether two lines cross, given the indexes of their endpoints in a pair of coordinate arrays
+     * and the distance within which endpoints are the same point.
+     * @param ys the Y coordinates of all points
+     * @param xs the X coordinates of all points (same order as ys)
+     * @param firstStart the index of an endpoint of one line
+     * @param firstEnd the index of the other endpoint of that line
+     * @param secondStart the index of an endpoint of another line
+     * @param secondEnd the index of the other endpoint of that other line
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     * @return whether the two lines cross
+     */
+    public static boolean linesCross(final double[] ys, final double[] xs,
+                                     final int firstStart, final int firstEnd,
+                                     final int secondStart, final int secondEnd, final double pointTolerance) {
+        double originY = ys[firstStart];
+        double originX = xs[firstStart];
+        return crossesFromOrigin(ys[firstEnd] - originY, xs[firstEnd] - originX,
+                ys[secondStart] - originY, xs[secondStart] - originX,
+                ys[secondEnd] - originY, xs[secondEnd] - originX, pointTolerance);
+    }
+
+    /**
+     * Determines whether a line crosses one of the segments in a flat segment array.
+     * <p>
+     * The array holds {@link #SEGMENT_STRIDE} entries per segment: start Y, start X, end Y, end X.
+     * @param segments the flat segment array
+     * @param segment the index of the segment to check (not the array offset)
+     * @param startY the latitude (or projected Y coordinate) of an endpoint of the line
+     * @param startX the longitude (or projected X coordinate) of that endpoint
+     * @param endY the latitude (or projected Y coordinate) of the other endpoint of the line
+     * @param endX the longitude (or projected X coordinate) of that other endpoint
+     * @return whether the line crosses the segment
+     */
+    public static boolean segmentCrosses(final double[] segments, final int segment,
+                                         final double startY, final double startX,
+                                         final double endY, final double endX) {
+        return segmentCrosses(segments, segment, startY, startX, endY, endX, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Determines whether a line crosses one of the segments in a flat segment array, given the distance within
+     * which endpoints are the same point.
+     * @param segments the flat segment array (see {@link #segmentCrosses(double[], int, double, double, double,
+     *                 double)})
+     * @param segment the index of the segment to check (not the array offset)
+     * @param startY the Y coordinate of an endpoint of the line
+     * @param startX the X coordinate of that endpoint
+     * @param endY the Y coordinate of the other endpoint of the line
+     * @param endX the X coordinate of that other endpoint
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     * @return whether the line crosses the segment
+     */
+    public static boolean segmentCrosses(final double[] segments, final int segment,
+                                         final double startY, final double startX,
+                                         final double endY, final double endX, final double pointTolerance) {
+        int offset = segment * SEGMENT_STRIDE;
+        return crossesFromOrigin(endY - startY, endX - startX,
+                segments[offset + START_Y] - startY, segments[offset + START_X] - startX,
+                segments[offset + END_Y] - startY, segments[offset + END_X] - startX, pointTolerance);
+    }
+
+    /**
+     * Determines whether two segments in a flat segment array cross each other.
+     * @param segments the flat segment array (see {@link #segmentCrosses(double[], int, double, double, double,
+     *                 double)})
+     * @param first the index of one segment
+     * @param second the index of the other segment
+     * @return whether the two segments cross
+     */
+    public static boolean segmentsCross(final double[] segments, final int first, final int second) {
+        return segmentsCross(segments, first, second, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Determines whether two segments in a flat segment array cross each other, given the distance within which
+     * endpoints are the same point.
+     * @param segments the flat segment array
+     * @param first the index of one segment
+     * @param second the index of the other segment
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     * @return whether the two segments cross
+     */
+    public static boolean segmentsCross(final double[] segments, final int first, final int second,
+                                        final double pointTolerance) {
+        int offset = first * SEGMENT_STRIDE;
+        return segmentCrosses(segments, second, segments[offset + START_Y], segments[offset + START_X],
+                segments[offset + END_Y], segments[offset + END_X], pointTolerance);
+    }
+
+    /**
+     * Finds the first segment in a set that a line crosses.
+     * <p>
+     * This is the one-against-many check the snake rule needs. Segments are rejected first by bounding box,
+     * then by whether both of the line's endpoints are clearly on the same side of the segment, using the
+     * values the set cached when the segment was added. Only the remaining segments get the full test, and the
+     * search stops at the first crossing. The result agrees with {@link #segmentCrosses} on every segment.
+     * @param set the segments to check
+     * @param startY the latitude (or projected Y coordinate) of an endpoint of the line
+     * @param startX the longitude (or projected X coordinate) of that endpoint
+     * @param endY the latitude (or projected Y coordinate) of the other endpoint of the line
+     * @param endX the longitude (or projected X coordinate) of that other endpoint
+     * @return the index of the first segment the line crosses, or -1 if it crosses none
+     */
+    public static int firstCrossing(final SegmentSet set, final double startY, final double startX,
+                                    final double endY, final double endX) {
+        return firstCrossing(set, set.size(), startY, startX, endY, endX);
+    }
+
+    /**
+     * Finds the first segment among the oldest segments of a set that a line crosses.
+     * <p>
+     * Works like {@link #firstCrossing(SegmentSet, double, double, double, double)} on only the segments with
+     * indexes below the count, such as all but the last segment of a path.
+     * @param set the segments
+     * @param count how many segments to check, starting from the first
+     * @param startY the latitude (or projected Y coordinate) of an endpoint of the line
+     * @param startX the longitude (or projected X coordinate) of that endpoint
+     * @param endY the latitude (or projected Y coordinate) of the other endpoint of the line
+     * @param endX the longitude (or projected X coordinate) of that other endpoint
+     * @return the index of the first of those segments the line crosses, or -1 if it crosses none
+     */
+    public static int firstCrossing(final SegmentSet set, final int count, final double startY,
+                                    final double startX, final double endY, final double endX) {
+        double lineMinY = Math.min(startY, endY);
+        double lineMinX = Math.min(startX, endX);
+        double lineMaxY = Math.max(startY, endY);
+        double lineMaxX = Math.max(startX, endX);
+        double[] minY = set.getMinY();
+        double[] minX = set.getMinX();
+        double[] maxY = set.getMaxY();
+        double[] maxX = set.getMaxX();
+        for (int i = 0; i < count; i++) {
+            if (maxX[i] < lineMinX || minX[i] > lineMaxX || maxY[i] < lineMinY || minY[i] > lineMaxY) {
+                continue;
+            }
+            if (set.sidesStraddle(i, startY, startX, endY, endX) && set.fullCheck(i, startY, startX, endY, endX)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first segment among some members of a set that a line crosses.
+     * <p>
+     * Works like {@link #firstCrossing(SegmentSet, double, double, double, double)} on only the listed
+     * segments, such as the candidates from a spatial index.
+     * @param set the segments
+     * @param segments indexes of the segments to check
+     * @param count how many indexes to use from the array
+     * @param startY the latitude (or projected Y coordinate) of an endpoint of the line
+     * @param startX the longitude (or projected X coordinate) of that endpoint
+     * @param endY the latitude (or projected Y coordinate) of the other endpoint of the line
+     * @param endX the longitude (or projected X coordinate) of that other endpoint
+     * @return the index of the first listed segment the line crosses, or -1 if it crosses none
+     */
+    public static int firstCrossing(final SegmentSet set, final int[] segments, final int count,
+                                    final double startY, final double startX, final double endY, final double endX) {
+        for (int i = 0; i < count; i++) {
+            if (set.crosses(segments[i], startY, startX, endY, endX)) {
+                return segments[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores a segment into a flat segment array.
+     * @param segments the flat segment array (see {@link #segmentCrosses})
+     * @param segment the index of the segment to store (not the array offset)
+     * @param startY the latitude (or projected Y coordinate) of the segment's start
+     * @param startX the longitude (or projected X coordinate) of the segment's start
+     * @param endY the latitude (or projected Y coordinate) of the segment's end
+     * @param endX the longitude (or projected X coordinate) of the segment's end
+     */
+    public static void setSegment(final double[] segments, final int segment,
+                                  final double startY, final double startX,
+                                  final double endY, final double endX) {
+        int offset = segment * SEGMENT_STRIDE;
+        segments[offset + START_Y] = startY;
+        segments[offset + START_X] = startX;
+        segments[offset + END_Y] = endY;
+        segments[offset + END_X] = endX;
+    }
+
+    /**
+     * Determines whether two lines cross, given coordinates relative to the start of the first line.
+     * <p>
+     * Working relative to one endpoint keeps the coordinates small, which helps the orientation products
+     * stay precise, and means the first line's start need not be passed at all.
+     * @param firstEndY Y offset of the first line's end
+     * @param firstEndX X offset of the first line's end
+     * @param secondStartY Y offset of the second line's start
+     * @param secondStartX X offset of the second line's start
+     * @param secondEndY Y offset of the second line's end
+     * @param secondEndX X offset of the second line's end
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point
+     * @return whether the two lines cross
+     */
+    static boolean crossesFromOrigin(final double firstEndY, final double firstEndX,
+                                     final double secondStartY, final double secondStartX,
+                                     final double secondEndY, final double secondEndX, final double pointTolerance) {
+        if (Math.max(0, firstEndX) < Math.min(secondStartX, secondEndX)
+                || Math.min(0, firstEndX) > Math.max(secondStartX, secondEndX)
+                || Math.max(0, firstEndY) < Math.min(secondStartY, secondEndY)
+                || Math.min(0, firstEndY) > Math.max(secondStartY, secondEndY)) {
+            // The bounding boxes don't even overlap
+            return false;
+        }
+        if (samePoint(secondStartY, secondStartX, 0, 0, pointTolerance)
+                || samePoint(secondEndY, secondEndX, 0, 0, pointTolerance)
+                || samePoint(firstEndY, firstEndX, secondStartY, secondStartX, pointTolerance)
+                || samePoint(firstEndY, firstEndX, secondEndY, secondEndX, pointTolerance)) {
+            // The lines are just touching, not crossing each other
+            return false;
+        }
+
+        double secondY = secondEndY - secondStartY;
+        double secondX = secondEndX - secondStartX;
+        // Orientations of the second line's endpoints relative to the first line
+        double startSide = firstEndX * secondStartY - firstEndY * secondStartX;
+        double endSide = firstEndX * secondEndY - firstEndY * secondEndX;
+        if (Math.abs(endSide - startSide) <= GeoMath.COMPARE_EPSILON * Math.abs(firstEndX * secondX)) {
+            // They're parallel (their slopes are the same)
+            return false;
+        }
+        double firstTolerance = GeoMath.COMPARE_EPSILON * (Math.abs(firstEndX) + Math.abs(firstEndY));
+        if (Math.min(startSide, endSide) > firstTolerance || Math.max(startSide, endSide) < -firstTolerance) {
+            // The second line is entirely on one side of the first
+            return false;
+        }
+
+        // Orientations of the first line's endpoints (the origin and firstEnd) relative to the second line
+        double originSide = secondY * secondStartX - secondX * secondStartY;
+        double firstEndSide = secondX * (firstEndY - secondStartY) - secondY * (firstEndX - secondStartX);
+        double secondTolerance = GeoMath.COMPARE_EPSILON * (Math.abs(secondX) + Math.abs(secondY));
+        // Crossing unless the first line is entirely on one side of the second (an endpoint touching counts)
+        return Math.min(originSide, firstEndSide) <= secondTolerance
+                && Math.max(originSide, firstEndSide) >= -secondTolerance;
+    }
+
+    /**
+     * HELPER FUNCTION: determines whether two points are close enough to be the same point.
+     * <p>
+     * With the latitude/longitude tolerance this is the same test as LatLngUtils.same.
+     * @param oneY the Y coordinate of one point
+     * @param oneX the X coordinate of that point
+     * @param anotherY the Y coordinate of another point
+     * @param anotherX the X coordinate of that other point
+     * @param pointTolerance how close in both X and Y the points must be
+     * @return whether the points are the same
+     */
+    private static boolean samePoint(final double oneY, final double oneX,
+                                     final double anotherY, final double anotherX, final double pointTolerance) {
+        return Math.abs(oneY - anotherY) < pointTolerance && Math.abs(oneX - anotherX) < pointTolerance;
+    }
+
+}
@@ -0,0 +1,274 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.Arrays;
+
+/**
+ * A growable set of line segments stored as parallel arrays, for checking one line against many segments.
+ * <p>
+ * Besides the endpoints, each segment's bounding box, direction, line offset, and side tolerance are
+ * computed once when it is added. {@link SegmentMath#firstCrossing(SegmentSet, double, double, double,
+ * double)} then rejects most segments with a few comparisons and multiplications on those arrays, reading each
+ * array in order, before running the full crossing test on the rest.
+ * <p>
+ * Coordinates can be latitude/longitude or projected by a {@link LocalFrame}, as with SegmentMath. A set of
+ * projected segments needs the frame's point tolerance, so that touching endpoints are recognized in meters.
+ */
+public final class SegmentSet {
+
+    /** Capacity of a new set. */
+    static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Multiple of SegmentMath's tolerance used by the side prefilter. Being generous keeps rounding in
+     * the absolute-coordinate products from ever rejecting a segment the full test would accept.
+     */
+    private static final double SIDE_TOLERANCE_FACTOR = 2;
+
+    /** Start Y coordinate of each segment. */
+    private double[] startY;
+
+    /** Start X coordinate of each segment. */
+    private double[] startX;
+
+    /** End Y coordinate of each segment. */
+    private double[] endY;
+
+    /** End X coordinate of each segment. */
+    private double[] endX;
+
+    /** Minimum Y coordinate of each segment. */
+    private double[] minY;
+
+    /** Minimum X coordinate of each segment. */
+    private double[] minX;
+
+    /** Maximum Y coordinate of each segment. */
+    private double[] maxY;
+
+    /** Maximum X coordinate of each segment. */
+    private double[] maxX;
+
+    /** Y component of each segment's direction (end minus start). */
+    private double[] directionY;
+
+    /** X component of each segment's direction (end minus start). */
+    private double[] directionX;
+
+    /**
+     * Line offset of each segment, so that directionX * y - directionY * x - offset is zero on the line and
+     * its sign gives the side a point is on.
+     */
+    private double[] offset;
+
+    /** How far off each segment's line (in side units) a point must be to be surely on one side. */
+    private double[] sideTolerance;
+
+    /** How close in both X and Y two endpoints must be to count as the same point. */
+    private final double pointTolerance;
+
+    /** The number of segments in the set. */
+    private int size;
+
+    /**
+     * Creates an empty set of segments in latitude/longitude.
+     */
+    public SegmentSet() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty set of segments in latitude/longitude with room for a number of segments, so that adding
+     * that many never reallocates.
+     * @param capacity the number of segments to make room for
+     */
+    public SegmentSet(final int capacity) {
+        this(capacity, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Creates an empty set with room for a number of segments, for coordinates in any units.
+     * @param capacity the number of segments to make room for
+     * @param setPointTolerance how close in both X and Y two endpoints must be to count as the same point
+     *                          (see {@link LocalFrame#getPointTolerance()})
+     */
+    public SegmentSet(final int capacity, final double setPointTolerance) {
+        pointTolerance = setPointTolerance;
+        int length = Math.max(1, capacity);
+        startY = new double[length];
+        startX = new double[length];
+        endY = new double[length];
+        endX = new double[length];
+        minY = new double[length];
+        minX = new double[length];
+        maxY = new double[length];
+        maxX = new double[length];
+        directionY = new double[length];
+        directionX = new double[length];
+        offset = new double[length];
+        sideTolerance = new double[length];
+    }
+
+    /**
+     * Adds a segment to the set.
+     * @param setStartY the Y coordinate of the segment's start
+     * @param setStartX the X coordinate of the segment's start
+     * @param setEndY the Y coordinate of the segment's end
+     * @param setEndX the X coordinate of the segment's end
+     * @return the index of the new segment
+     */
+    public int add(final double setStartY, final double setStartX, final double setEndY, final double setEndX) {
+        if (size == startY.length) {
+            grow();
+        }
+        int segment = size;
+        startY[segment] = setStartY;
+        startX[segment] = setStartX;
+        endY[segment] = setEndY;
+        endX[segment] = setEndX;
+        minY[segment] = Math.min(setStartY, setEndY);
+        minX[segment] = Math.min(setStartX, setEndX);
+        maxY[segment] = Math.max(setStartY, setEndY);
+        maxX[segment] = Math.max(setStartX, setEndX);
+        directionY[segment] = setEndY - setStartY;
+        directionX[segment] = setEndX - setStartX;
+        offset[segment] = directionX[segment] * setStartY - directionY[segment] * setStartX;
+        sideTolerance[segment] = SIDE_TOLERANCE_FACTOR * GeoMath.COMPARE_EPSILON
+                * (Math.abs(directionX[segment]) + Math.abs(directionY[segment]));
+        size++;
+        return segment;
+    }
+
+    /**
+     * Gets the number of segments in the set.
+     * @return how many segments have been added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all segments, keeping the capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the segments into a flat segment array, such as for {@link SegmentSweep}.
+     * @return a new array in the {@link SegmentMath#SEGMENT_STRIDE} layout
+     */
+    public double[] toSegmentArray() {
+        double[] segments = new double[size * SegmentMath.SEGMENT_STRIDE];
+        for (int i = 0; i < size; i++) {
+            SegmentMath.setSegment(segments, i, startY[i], startX[i], endY[i], endX[i]);
+        }
+        return segments;
+    }
+
+    /**
+     * Determines whether a line crosses one segment of the set.
+     * <p>
+     * The result is the same as {@link SegmentMath#segmentCrosses(double[], int, double, double, double, double,
+     * double)} on the segment's coordinates with the set's point tolerance.
+     * @param segment the index of the segment
+     * @param lineStartY the Y coordinate of an endpoint of the line
+     * @param lineStartX the X coordinate of that endpoint
+     * @param lineEndY the Y coordinate of the other endpoint of the line
+     * @param lineEndX the X coordinate of that other endpoint
+     * @return whether the line crosses the segment
+     */
+    boolean crosses(final int segment, final double lineStartY, final double lineStartX,
+                    final double lineEndY, final double lineEndX) {
+        if (maxX[segment] < Math.min(lineStartX, lineEndX) || minX[segment] > Math.max(lineStartX, lineEndX)
+                || maxY[segment] < Math.min(lineStartY, lineEndY) || minY[segment] > Math.max(lineStartY, lineEndY)) {
+            return false;
+        }
+        return sidesStraddle(segment, lineStartY, lineStartX, lineEndY, lineEndX)
+                && fullCheck(segment, lineStartY, lineStartX, lineEndY, lineEndX);
+    }
+
+    /**
+     * Checks whether a line's endpoints could be on different sides of a segment's line.
+     * @param segment the index of the segment
+     * @param lineStartY the Y coordinate of an endpoint of the line
+     * @param lineStartX the X coordinate of that endpoint
+     * @param lineEndY the Y coordinate of the other endpoint of the line
+     * @param lineEndX the X coordinate of that other endpoint
+     * @return false if the line is surely entirely on one side of the segment's line
+     */
+    boolean sidesStraddle(final int segment, final double lineStartY, final double lineStartX,
+                          final double lineEndY, final double lineEndX) {
+        double startSide = directionX[segment] * lineStartY - directionY[segment] * lineStartX - offset[segment];
+        double endSide = directionX[segment] * lineEndY - directionY[segment] * lineEndX - offset[segment];
+        double tolerance = sideTolerance[segment];
+        return !(startSide > tolerance && endSide > tolerance) && !(startSide < -tolerance && endSide < -tolerance);
+    }
+
+    /**
+     * Runs the full crossing test between a line and one segment of the set.
+     * @param segment the index of the segment
+     * @param lineStartY the Y coordinate of an endpoint of the line
+     * @param lineStartX the X coordinate of that endpoint
+     * @param lineEndY the Y coordinate of the other endpoint of the line
+     * @param lineEndX the X coordinate of that other endpoint
+     * @return whether the line crosses the segment
+     */
+    boolean fullCheck(final int segment, final double lineStartY, final double lineStartX,
+                      final double lineEndY, final double lineEndX) {
+        return SegmentMath.crossesFromOrigin(lineEndY - lineStartY, lineEndX - lineStartX,
+                startY[segment] - lineStartY, startX[segment] - lineStartX,
+                endY[segment] - lineStartY, endX[segment] - lineStartX, pointTolerance);
+    }
+
+    /**
+     * Gets the minimum Y coordinates of the segments. The array is shared and may be longer than the set.
+     * @return the array of minimum Y coordinates
+     */
+    double[] getMinY() {
+        return minY;
+    }
+
+    /**
+     * Gets the minimum X coordinates of the segments. The array is shared and may be longer than the set.
+     * @return the array of minimum X coordinates
+     */
+    double[] getMinX() {
+        return minX;
+    }
+
+    /**
+     * Gets the maximum Y coordinates of the segments. The array is shared and may be longer than the set.
+     * @return the array of maximum Y coordinates
+     */
+    double[] getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Gets the maximum X coordinates of the segments. The array is shared and may be longer than the set.
+     * @return the array of maximum X coordinates
+     */
+    double[] getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Doubles the capacity of every array.
+     */
+    private void grow() {
+        int capacity = startY.length * 2;
+        startY = Arrays.copyOf(startY, capacity);
+        startX = Arrays.copyOf(startX, capacity);
+        endY = Arrays.copyOf(endY, capacity);
+        endX = Arrays.copyOf(endX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        directionY = Arrays.copyOf(directionY, capacity);
+        directionX = Arrays.copyOf(directionX, capacity);
+        offset = Arrays.copyOf(offset, capacity);
+        sideTolerance = Arrays.copyOf(sideTolerance, capacity);
+    }
+
+}
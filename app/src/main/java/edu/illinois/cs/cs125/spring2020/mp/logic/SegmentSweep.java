@@ -0,0 +1,419 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Holds sweep-line methods for checking a whole set of line segments for crossings at once.
+ * <p>
+ * Segments are given as a flat segment array in the {@link SegmentMath#SEGMENT_STRIDE} layout, for
+ * example every segment of every player's path in a target mode game. Crossing has the same meaning as in
+ * {@link SegmentMath}: segments that only share an endpoint are touching, not crossing. The overloads without
+ * a point tolerance are for latitude/longitude.
+ * <p>
+ * anyCross is the Shamos-Hoey algorithm and takes O(n log n) time. crossingPairs reports every crossing pair
+ * by sweeping over the segments' bounding boxes, which takes O(n log n) time plus the number of pairs whose
+ * bounding boxes overlap.
+ */
+public final class SegmentSweep {
+
+    /** Segment ID used for the probe point when searching the sweep status by Y coordinate. */
+    private static final int PROBE = -1;
+
+    /** The segments being swept. */
+    private final double[] segments;
+
+    /** How close in both X and Y two endpoints must be to count as the same point. */
+    private final double pointTolerance;
+
+    /** X coordinate of each segment's left endpoint. */
+    private final double[] leftX;
+
+    /** Y coordinate of each segment's left endpoint. */
+    private final double[] leftY;
+
+    /** X coordinate of each segment's right endpoint. */
+    private final double[] rightX;
+
+    /** Y coordinate of each segment's right endpoint. */
+    private final double[] rightY;
+
+    /** Slope of each segment (infinite for vertical segments). */
+    private final double[] slopes;
+
+    /** Current X coordinate of the sweep line. */
+    private double sweepX;
+
+    /** Whether segments are being compared just left of the sweep line (when removing) rather than right. */
+    private boolean comparingLeft;
+
+    /** Y coordinate of the probe point. */
+    private double probeY;
+
+    /** Segments currently intersecting the sweep line, ordered by Y coordinate. */
+    private final NavigableSet<Integer> status;
+
+    /** Scratch space for the Y coordinates of the event points on the sweep line. */
+    private final double[] pointYs;
+
+    /** Scratch space for the segments meeting at one event point. */
+    private final int[] meeting;
+
+    /**
+     * Prepares a sweep over a set of segments.
+     * @param setSegments the flat segment array
+     * @param count how many segments to use from the array
+     * @param setPointTolerance how close in both X and Y two endpoints must be to count as the same point
+     */
+    private SegmentSweep(final double[] setSegments, final int count, final double setPointTolerance) {
+        segments = setSegments;
+        pointTolerance = setPointTolerance;
+        leftX = new double[count];
+        leftY = new double[count];
+        rightX = new double[count];
+        rightY = new double[count];
+        slopes = new double[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * SegmentMath.SEGMENT_STRIDE;
+            double startX = segments[offset + SegmentMath.START_X];
+            double startY = segments[offset + SegmentMath.START_Y];
+            double endX = segments[offset + SegmentMath.END_X];
+            double endY = segments[offset + SegmentMath.END_Y];
+            if (startX < endX || (startX == endX && startY <= endY)) {
+                leftX[i] = startX;
+                leftY[i] = startY;
+                rightX[i] = endX;
+                rightY[i] = endY;
+            } else {
+                leftX[i] = endX;
+                leftY[i] = endY;
+                rightX[i] = startX;
+                rightY[i] = startY;
+            }
+            slopes[i] = (rightY[i] - leftY[i]) / (rightX[i] - leftX[i]);
+        }
+        status = new TreeSet<>(this::compareAtSweep);
+        pointYs = new double[count * 2];
+        meeting = new int[count];
+    }
+
+    /**
+     * Determines whether any two segments in a set cross each other.
+     * @param segments the flat segment array
+     * @param count how many segments to use from the array
+     * @return whether any pair of segments crosses
+     */
+    public static boolean anyCross(final double[] segments, final int count) {
+        return anyCross(segments, count, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Determines whether any two segments in a set cross each other, given the distance within which endpoints
+     * are the same point.
+     * @param segments the flat segment array
+     * @param count how many segments to use from the array
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point (see
+     *                       {@link LocalFrame#getPointTolerance()})
+     * @return whether any pair of segments crosses
+     */
+    public static boolean anyCross(final double[] segments, final int count, final double pointTolerance) {
+        return new SegmentSweep(segments, count, pointTolerance).sweep();
+    }
+
+    /**
+     * Finds every pair of segments in a set that cross each other.
+     * @param segments the flat segment array
+     * @param count how many segments to use from the array
+     * @return each crossing pair as {lower index, higher index}, in no particular order
+     */
+    public static List<int[]> crossingPairs(final double[] segments, final int count) {
+        return crossingPairs(segments, count, GeoMath.COMPARE_EPSILON);
+    }
+
+    /**
+     * Finds every pair of segments in a set that cross each other, given the distance within which endpoints
+     * are the same point.
+     * @param segments the flat segment array
+     * @param count how many segments to use from the array
+     * @param pointTolerance how close in both X and Y two endpoints must be to count as the same point (see
+     *                       {@link LocalFrame#getPointTolerance()})
+     * @return each crossing pair as {lower index, higher index}, in no particular order
+     */
+    public static List<int[]> crossingPairs(final double[] segments, final int count,
+                                            final double pointTolerance) {
+        Integer[] order = new Integer[count];
+        double[] minX = new double[count];
+        double[] maxX = new double[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * SegmentMath.SEGMENT_STRIDE;
+            minX[i] = Math.min(segments[offset + SegmentMath.START_X],
+                    segments[offset + SegmentMath.END_X]);
+            maxX[i] = Math.max(segments[offset + SegmentMath.START_X],
+                    segments[offset + SegmentMath.END_X]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> minX[i]));
+
+        List<int[]> pairs = new ArrayList<>();
+        int[] active = new int[count];
+        int activeCount = 0;
+        for (int segment : order) {
+            // Drop segments that end before this one starts, checking the rest against it
+            int kept = 0;
+            for (int i = 0; i < activeCount; i++) {
+                int other = active[i];
+                if (maxX[other] < minX[segment]) {
+                    continue;
+                }
+                active[kept] = other;
+                kept++;
+                if (SegmentMath.segmentsCross(segments, segment, other, pointTolerance)) {
+                    pairs.add(new int[] {Math.min(segment, other), Math.max(segment, other)});
+                }
+            }
+            active[kept] = segment;
+            activeCount = kept + 1;
+        }
+        return pairs;
+    }
+
+    /**
+     * Runs the Shamos-Hoey sweep.
+     * @return whether any pair of segments crosses
+     */
+    private boolean sweep() {
+        int count = slopes.length;
+        Integer[] events = new Integer[count * 2];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i;
+        }
+        // Even events start segments, odd events end them; at the same X, ends come first so that paths
+        // continuing from a shared endpoint never have both segments in the status at once
+        Arrays.sort(events, Comparator.<Integer>comparingDouble(this::eventX)
+                .thenComparingInt(e -> 1 - e % 2)
+                .thenComparingDouble(this::eventY));
+
+        int first = 0;
+        while (first < events.length) {
+            sweepX = eventX(events[first]);
+            int last = first;
+            while (last < events.length && eventX(events[last]) == sweepX) {
+                last++;
+            }
+            if (verticalsCross(events, first, last) || pointsCross(events, first, last)) {
+                return true;
+            }
+            for (int i = first; i < last; i++) {
+                int segment = events[i] / 2;
+                if (isVertical(segment)) {
+                    continue;
+                }
+                if (events[i] % 2 == 1) {
+                    if (removeSegment(segment)) {
+                        return true;
+                    }
+                } else if (insertSegment(segment)) {
+                    return true;
+                }
+            }
+            first = last;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a segment from the status, checking its former neighbors against each other.
+     * @param segment the segment ending at the sweep line
+     * @return whether a crossing was found
+     */
+    private boolean removeSegment(final int segment) {
+        comparingLeft = true;
+        Integer above = status.higher(segment);
+        Integer below = status.lower(segment);
+        status.remove(segment);
+        return above != null && below != null && SegmentMath.segmentsCross(segments, above, below, pointTolerance);
+    }
+
+    /**
+     * Adds a segment to the status, checking it against its new neighbors.
+     * @param segment the segment starting at the sweep line
+     * @return whether a crossing was found
+     */
+    private boolean insertSegment(final int segment) {
+        comparingLeft = false;
+        status.add(segment);
+        Integer above = status.higher(segment);
+        Integer below = status.lower(segment);
+        return (above != null && SegmentMath.segmentsCross(segments, segment, above, pointTolerance))
+                || (below != null && SegmentMath.segmentsCross(segments, segment, below, pointTolerance));
+    }
+
+    /**
+     * Checks the vertical segments at the sweep line against the other segments there.
+     * <p>
+     * Vertical segments never enter the status. Instead, each is checked against the segments whose Y
+     * coordinate at the sweep line falls within its span, both before the segments ending here are removed and
+     * against the segments starting here. Every such segment either crosses it or only touches its endpoint.
+     * @param events the sorted events
+     * @param first index of the first event at the sweep line
+     * @param last index after the last event at the sweep line
+     * @return whether a crossing was found
+     */
+    private boolean verticalsCross(final Integer[] events, final int first, final int last) {
+        comparingLeft = true;
+        for (int i = first; i < last; i++) {
+            int vertical = events[i] / 2;
+            if (events[i] % 2 == 1 || !isVertical(vertical)) {
+                continue;
+            }
+            probeY = leftY[vertical];
+            for (Integer other = status.ceiling(PROBE); other != null && yAtSweep(other) <= rightY[vertical];
+                 other = status.higher(other)) {
+                if (SegmentMath.segmentsCross(segments, vertical, other, pointTolerance)) {
+                    return true;
+                }
+            }
+            for (int j = first; j < last; j++) {
+                int other = events[j] / 2;
+                if (events[j] % 2 == 0 && other != vertical
+                        && SegmentMath.segmentsCross(segments, vertical, other, pointTolerance)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the segments meeting at each event point on the sweep line against each other.
+     * <p>
+     * Neighbor checks alone can miss a segment ending on the middle of another (which counts as crossing) when
+     * a third segment touching or overlapping both sorts between them, so every segment passing through, ending
+     * at, or starting at an event point is checked against the others there.
+     * @param events the sorted events
+     * @param first index of the first event at the sweep line
+     * @param last index after the last event at the sweep line
+     * @return whether a crossing was found
+     */
+    private boolean pointsCross(final Integer[] events, final int first, final int last) {
+        int points = 0;
+        for (int i = first; i < last; i++) {
+            if (!isVertical(events[i] / 2)) {
+                pointYs[points] = eventY(events[i]);
+                points++;
+            }
+        }
+        Arrays.sort(pointYs, 0, points);
+
+        comparingLeft = true;
+        for (int p = 0; p < points; p++) {
+            if (p > 0 && pointYs[p] == pointYs[p - 1]) {
+                continue;
+            }
+            probeY = pointYs[p];
+            int count = 0;
+            for (Integer other = status.ceiling(PROBE); other != null && yAtSweep(other) == probeY;
+                 other = status.higher(other)) {
+                meeting[count] = other;
+                count++;
+            }
+            for (int i = first; i < last; i++) {
+                int segment = events[i] / 2;
+                if (events[i] % 2 == 0 && !isVertical(segment) && leftY[segment] == probeY) {
+                    meeting[count] = segment;
+                    count++;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    if (SegmentMath.segmentsCross(segments, meeting[i], meeting[j], pointTolerance)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a segment is vertical (or just a point), so that it has no single Y at the sweep line.
+     * @param segment the segment index
+     * @return whether both endpoints have the same X coordinate
+     */
+    private boolean isVertical(final int segment) {
+        return leftX[segment] == rightX[segment];
+    }
+
+    /**
+     * Gets the X coordinate of an event.
+     * @param event the event (twice the segment index, plus one for the segment's end)
+     * @return the X coordinate of the corresponding endpoint
+     */
+    private double eventX(final int event) {
+        if (event % 2 == 0) {
+            return leftX[event / 2];
+        }
+        return rightX[event / 2];
+    }
+
+    /**
+     * Gets the Y coordinate of an event.
+     * @param event the event (twice the segment index, plus one for the segment's end)
+     * @return the Y coordinate of the corresponding endpoint
+     */
+    private double eventY(final int event) {
+        if (event % 2 == 0) {
+            return leftY[event / 2];
+        }
+        return rightY[event / 2];
+    }
+
+    /**
+     * Gets the Y coordinate at which a segment (or the probe) meets the sweep line.
+     * @param segment the segment index, or PROBE
+     * @return the Y coordinate, exactly equal to an endpoint's when the sweep line passes through it
+     */
+    private double yAtSweep(final int segment) {
+        if (segment == PROBE) {
+            return probeY;
+        } else if (sweepX == leftX[segment]) {
+            return leftY[segment];
+        } else if (sweepX == rightX[segment]) {
+            return rightY[segment];
+        }
+        return leftY[segment] + (sweepX - leftX[segment]) * slopes[segment];
+    }
+
+    /**
+     * Orders two segments by where they meet the sweep line.
+     * <p>
+     * Segments meeting at the same point are ordered by where they are just beyond it: just right of the
+     * sweep line when inserting, just left when removing. The probe sorts before every segment at its point.
+     * @param one a segment index, or PROBE
+     * @param other another segment index, or PROBE
+     * @return negative if one is below other, positive if above, zero only for the same segment
+     */
+    private int compareAtSweep(final int one, final int other) {
+        int byY = Double.compare(yAtSweep(one), yAtSweep(other));
+        if (byY != 0 || one == other) {
+            return byY;
+        } else if (one == PROBE) {
+            return -1;
+        } else if (other == PROBE) {
+            return 1;
+        }
+        int bySlope = Double.compare(slopes[one], slopes[other]);
+        if (comparingLeft) {
+            bySlope = -bySlope;
+        }
+        if (bySlope != 0) {
+            return bySlope;
+        }
+        return Integer.compare(one, other);
+    }
+
+}
@@ -1,22 +1,22 @@
 package edu.illinois.cs.cs125.spring2020.mp.logic;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.PolylineOptions;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.neovisionaries.ws.client.WebSocket;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import edu.illinois.cs.cs125.spring2020.mp.R;
 
-import static edu.illinois.cs.cs125.spring2020.mp.logic.LineCrossDetector.linesCross;
 import static edu.illinois.cs.cs125.spring2020.mp.logic.TeamID.OBSERVER;
 
 /**
@@ -24,14 +24,74 @@ import static edu.illinois.cs.cs125.spring2020.mp.logic.TeamID.OBSERVER;
  */
 public final class TargetGame extends Game {
 
+    /** Tag for logging. */
+    private static final String TAG = "TargetGame";
+
+    /** Number of targets above which an R-tree beats scanning all targets on each location update. */
+    private static final int MIN_TREE_TARGETS = 128;
+
+    /**
+     * Width or height of the game area, in meters, above which the local projection is too inaccurate for
+     * proximity checks and great-circle distances are used instead.
+     */
+    private static final double LARGE_AREA_SPAN = 10000;
+
     /** The game's proximity threshold in meters. */
     private int proximityThreshold;
 
     /** Stores Target instances looked up by server ID. */
     private Map<String, Target> targets = new HashMap<>();
 
-    /** Map of player emails to their paths (visited target IDs). */
-    private Map<String, List<String>> playerPaths = new HashMap<>();
+    /** Indexes of targets (into the arrays below) looked up by server ID. */
+    private Map<String, Integer> targetIndexes = new HashMap<>();
+
+    /** Server IDs of all targets, in the order they were loaded. */
+    private String[] targetIds;
+
+    /** Projected Y coordinates of all targets (same order as targetIds). */
+    private double[] targetYs;
+
+    /** Projected X coordinates of all targets (same order as targetIds). */
+    private double[] targetXs;
+
+    /** The local projection used for distance and line-crossing checks. */
+    private LocalFrame frame;
+
+    /** Decides whether the player is within the proximity threshold of a target. */
+    private ProximityCheck proximity;
+
+    /** Map of player emails to their paths (indexes of visited targets, unboxed). */
+    private Map<String, IntList> playerPaths = new HashMap<>();
+
+    /** Spatial index of every segment of every player's path, in projected coordinates. */
+    private SegmentGrid pathGrid;
+
+    /** Index of the target at the start of each path segment (same order as the grid's segments). */
+    private IntList segmentStarts = new IntList();
+
+    /** Index of the target at the end of each path segment (same order as the grid's segments). */
+    private IntList segmentEnds = new IntList();
+
+    /** Remembered crossing answers between target-to-target lines, or null if the game is too large. */
+    private CrossingMemo crossingMemo;
+
+    /** Thread filling in crossingMemo ahead of time, or null if there is no memo. */
+    private Thread memoWarmer;
+
+    /** Great-circle proximity check for games too large to project, or null if the projection is used. */
+    private TieredDistance largeAreaProximity;
+
+    /** Latitudes of all targets, kept only for games that use largeAreaProximity. */
+    private double[] targetLatitudes;
+
+    /** Longitudes of all targets, kept only for games that use largeAreaProximity. */
+    private double[] targetLongitudes;
+
+    /** Spatial index of the projected target positions, or null if the game is small enough to scan. */
+    private PackedRTree targetTree;
+
+    /** Buffer for the indexes of targets near the player. */
+    private int[] nearbyTargets;
 
 
     /**
@@ -54,16 +114,47 @@ public final class TargetGame extends Game {
         proximityThreshold = fullState.get("proximityThreshold").getAsInt();
 
         // Load the list of all targets in the game
-        for (JsonElement t : fullState.getAsJsonArray("targets")) {
-            JsonObject targetInfo = t.getAsJsonObject();
+        JsonArray targetArray = fullState.getAsJsonArray("targets");
+        targetIds = new String[targetArray.size()];
+        double[] latitudes = new double[targetArray.size()];
+        double[] longitudes = new double[targetArray.size()];
+        for (int i = 0; i < targetArray.size(); i++) {
+            JsonObject targetInfo = targetArray.get(i).getAsJsonObject();
+            targetIds[i] = targetInfo.get("id").getAsString();
+            latitudes[i] = targetInfo.get("latitude").getAsDouble();
+            longitudes[i] = targetInfo.get("longitude").getAsDouble();
 
             // Create the Target, which places a marker on the map
-            Target target = new Target(map,
-                    new LatLng(targetInfo.get("latitude").getAsDouble(), targetInfo.get("longitude").getAsDouble()),
+            Target target = new Target(map, new LatLng(latitudes[i], longitudes[i]),
                     targetInfo.get("team").getAsInt());
+            moveScore(OBSERVER, target.getTeam());
 
             // Add it to the targets map so we can look it up by ID later
-            targets.put(targetInfo.get("id").getAsString(), target);
+            targets.put(targetIds[i], target);
+            targetIndexes.put(targetIds[i], i);
+        }
+
+        // Project the targets once so distance and crossing checks need no trigonometry
+        frame = LocalFrame.forPoints(latitudes, longitudes);
+        targetYs = new double[targetIds.length];
+        targetXs = new double[targetIds.length];
+        frame.project(latitudes, longitudes, targetYs, targetXs);
+        proximity = new ProximityCheck(frame, proximityThreshold);
+        pathGrid = SegmentGrid.forPoints(targetYs, targetXs, frame.getPointTolerance());
+        if (CrossingMemo.fitsDense(targetIds.length)) {
+            // every line connects two targets, so small games can work out every crossing ahead of time
+            // (larger games use the grid alone: it only tests nearby segments, while the memo's bounded cache
+            // would still be asked about every segment of every path)
+            crossingMemo = new CrossingMemo(targetYs, targetXs, frame.getPointTolerance());
+            memoWarmer = crossingMemo.startWarming();
+        }
+        if (spansLargeArea()) {
+            largeAreaProximity = new TieredDistance(proximityThreshold);
+            targetLatitudes = latitudes;
+            targetLongitudes = longitudes;
+        } else if (targetIds.length > MIN_TREE_TARGETS) {
+            targetTree = PackedRTree.forPoints(targetYs, targetXs);
+            nearbyTargets = new int[targetIds.length];
         }
 
         // Load the path of each player, which will be needed for checking for line crosses
@@ -71,9 +162,8 @@ public final class TargetGame extends Game {
             JsonObject player = p.getAsJsonObject();
             String playerEmail = player.get("email").getAsString();
 
-            // Create a list to hold the IDs of targets visited by the player, in order
-            List<String> path = new ArrayList<>();
-            playerPaths.put(playerEmail, path);
+            // Create a list to hold the indexes of targets visited by the player, in order
+            playerPaths.put(playerEmail, new IntList());
 
             // Examine each target in the player entry's path
             for (JsonElement t : player.getAsJsonArray("path")) {
@@ -82,6 +172,12 @@ public final class TargetGame extends Game {
                 extendPlayerPath(playerEmail, targetId, player.get("team").getAsInt());
             }
         }
+
+        // The server should never have let paths cross, but check all of them at once in case it did
+        if (SegmentSweep.anyCross(pathGrid.getSegments().toSegmentArray(), pathGrid.size(),
+                frame.getPointTolerance())) {
+            Log.w(TAG, "Loaded player paths cross each other");
+        }
     }
 
     /**
@@ -100,17 +196,47 @@ public final class TargetGame extends Game {
     public void locationUpdated(final LatLng location) {
         super.locationUpdated(location);
         // For each target within range of the player's current location, call tryClaimTarget
+        // compare squared distances in the game's projection
+        if (largeAreaProximity != null) {
+            // the projection is too distorted over this area, so measure on the sphere instead
+            for (int i = 0; i < targetIds.length; i++) {
+                if (largeAreaProximity.inRange(targetLatitudes[i], targetLongitudes[i],
+                        location.latitude, location.longitude)) {
+                    tryClaimTarget(i);
+                }
+            }
+            return;
+        }
+        double y = frame.toY(location.latitude);
+        double x = frame.toX(location.longitude);
+        if (targetTree != null) {
+            // large games: the tree finds the targets in range, which are claimed in index order as in a scan
+            int nearby = targetTree.searchNear(y, x, proximityThreshold, nearbyTargets);
+            Arrays.sort(nearbyTargets, 0, nearby);
+            for (int i = 0; i < nearby; i++) {
+                tryClaimTarget(nearbyTargets[i]);
+            }
+            return;
+        }
         // iterate through all targets
-        for (Map.Entry<String, Target> t : targets.entrySet()) {
-            String id = t.getKey();
-            Target target = t.getValue();
-            LatLng pos = target.getPosition();
-            if (LatLngUtils.distance(pos, location) <= proximityThreshold) {
-                tryClaimTarget(id, target);
+        for (int i = 0; i < targetIds.length; i++) {
+            if (proximity.inRangeProjected(targetYs[i], targetXs[i], y, x)) {
+                tryClaimTarget(i);
             }
         }
     }
 
+    /**
+     * Stops filling in the crossing memo, if it isn't finished yet.
+     */
+    @Override
+    public void close() {
+        super.close();
+        if (memoWarmer != null) {
+            memoWarmer.interrupt();
+        }
+    }
+
     /**
      * Processes an update from the server.
      * <p>
@@ -139,7 +265,7 @@ public final class TargetGame extends Game {
             // You need to use that information to update the game state and map
             // First update the captured target's team
             Target t = targets.get(targetId);
-            t.setTeam(playerTeam);
+            setTargetTeam(t, playerTeam);
             // Then call a helper function to update the player's path and add any needed line to the map
             extendPlayerPath(playerEmail, targetId, playerTeam);
             // Once that's done, inform the caller that we handled it
@@ -154,40 +280,29 @@ public final class TargetGame extends Game {
      * Claims a target if possible.
      * <p>
      * You need to implement this helper function to help locationUpdated do its job.
-     * @param id the server ID of the target
-     * @param target the target
+     * @param index the index of the target
      */
-    private void tryClaimTarget(final String id, final Target target) {
+    private void tryClaimTarget(final int index) {
+        String id = targetIds[index];
+        Target target = targets.get(id);
         // Make sure the target isn't already captured - return if it's already taken
         if (target.getTeam() != OBSERVER) {
             return;
         }
         // See if the player has already captured a target - if yes:
-        List<String> playerPath = playerPaths.get(super.getEmail());
-        if (playerPath != null) {
+        IntList playerPath = playerPaths.get(super.getEmail());
+        if (playerPath != null && !playerPath.isEmpty()) {
+            int lastTarget = playerPath.get(playerPath.size() - 1);
             //   See if the line between this target and the player's last capture intersects any existing line
             //   (make sure to check for crossing with all players' paths)
-            // iterate through all players
-            for (Map.Entry<String, List<String>> p : playerPaths.entrySet()) {
-                List<String> curPath = p.getValue();
-                // iterate through each player's paths
-                for (int j = 1; j < curPath.size(); j++) {
-                    Target start = targets.get(curPath.get(j - 1));
-                    Target end = targets.get(curPath.get(j));
-                    // first line: another line in the game
-                    // second line: end of our player's path to new target
-                    Target lastTarget = targets.get(playerPath.get((playerPath.size() - 1)));
-                    boolean cross = linesCross(start.getPosition(), end.getPosition(),
-                            lastTarget.getPosition(), target.getPosition());
-                    //   If lines would cross, return
-                    if (cross) {
-                        return;
-                    }
-                }
+            // remembered answers (small games) or the grid (large games) avoid testing every segment
+            if (pathCrosses(lastTarget, index)) {
+                //   If lines would cross, return
+                return;
             }
         }
         // Now that we know the target can be captured, update its owning team
-        target.setTeam(super.getMyTeam());
+        setTargetTeam(target, super.getMyTeam());
         // use extendPlayerPath to update game state and map
         extendPlayerPath(super.getEmail(), id, super.getMyTeam());
         // send targetVisit update to the server
@@ -211,20 +326,27 @@ public final class TargetGame extends Game {
      */
     private void extendPlayerPath(final String email, final String targetId, final int team) {
         // Get the specified player's path from the players/paths map
-        List<String> path = playerPaths.get(email);
+        IntList path = playerPaths.get(email);
+        int index = targetIndexes.get(targetId);
 
         // If this player has visited a target before, their path will be non-empty
         if (!path.isEmpty()) {
             // Get the positions of the previously and currently visited targets from the targets map
-            LatLng lastTargetPos = targets.get(path.get(path.size() - 1)).getPosition();
+            LatLng lastTargetPos = targets.get(targetIds[path.get(path.size() - 1)]).getPosition();
             LatLng currentTargetPos = targets.get(targetId).getPosition();
 
             // Use a helper function to draw the line
             addLineSegment(lastTargetPos, currentTargetPos, team);
+
+            // Index the new segment for later crossing checks
+            int lastIndex = path.get(path.size() - 1);
+            pathGrid.add(targetYs[lastIndex], targetXs[lastIndex], targetYs[index], targetXs[index]);
+            segmentStarts.add(lastIndex);
+            segmentEnds.add(index);
         }
 
         // Add this newly captured target to their path
-        path.add(targetId);
+        path.add(index);
     }
 
     /**
@@ -247,24 +369,69 @@ public final class TargetGame extends Game {
         super.getMap().addPolyline(fill);
     }
 
+    /**
+     * Determines whether a new line between two targets would cross any segment of any player's path.
+     * <p>
+     * Small games look up each segment in the crossing memo; larger ones ask the grid for the nearby segments.
+     * @param from the index of the target the line starts at
+     * @param to the index of the target the line ends at
+     * @return whether the line crosses an existing segment
+     */
+    private boolean pathCrosses(final int from, final int to) {
+        if (crossingMemo == null) {
+            return pathGrid.anyCrosses(targetYs[from], targetXs[from], targetYs[to], targetXs[to]);
+        }
+        for (int i = 0; i < segmentStarts.size(); i++) {
+            if (crossingMemo.linesCross(from, to, segmentStarts.get(i), segmentEnds.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the projected targets cover too much ground for the local projection to be trusted.
+     * @return whether the targets span more than LARGE_AREA_SPAN meters north-south or east-west
+     */
+    private boolean spansLargeArea() {
+        // the frame's origin is the southwest corner, so the largest coordinates are the spans
+        for (int i = 0; i < targetIds.length; i++) {
+            if (targetYs[i] > LARGE_AREA_SPAN || targetXs[i] > LARGE_AREA_SPAN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets a team's score in this target mode game.
      * <p>
      * You need to implement this function.
-     * @param teamId the team ID (same kind of value as the TeamID constants)
+     * @param teamId the team ID (same kind of value as the TeamID constants), or TeamID.OBSERVER to count
+     *               uncaptured targets
      * @return the number of targets owned by the team
      */
     @Override
     public int getTeamScore(final int teamId) {
         // Find how many targets are currently owned by the specified team
-        // Iterate through all targets
-        int total = 0;
-        for (Map.Entry<String, Target> t : targets.entrySet()) {
-            Target cur = t.getValue();
-            if (cur.getTeam() == teamId) {
-                total++;
+        // (counted as targets change hands, so no need to look at every target)
+        if (teamId == OBSERVER) {
+            int uncaptured = targets.size();
+            for (int team = TeamID.MIN_TEAM; team <= TeamID.MAX_TEAM; team++) {
+                uncaptured -= getRecordedScore(team);
             }
+            return uncaptured;
         }
-        return total;
+        return getRecordedScore(teamId);
+    }
+
+    /**
+     * Changes the team owning a target, keeping the team scores up to date.
+     * @param target the target
+     * @param team the team now owning the target
+     */
+    private void setTargetTeam(final Target target, final int team) {
+        moveScore(target.getTeam(), team);
+        target.setTeam(team);
     }
 }
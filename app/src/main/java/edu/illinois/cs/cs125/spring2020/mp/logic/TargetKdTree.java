@@ -0,0 +1,399 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * A static KD-tree over target latitudes and longitudes, for finding the targets within range of a point.
+ * <p>
+ * The tree is stored implicitly: targets are reordered so that each run of the order array has its splitting
+ * target in the middle, with the targets before it on one side of that target's latitude (at even depths) or
+ * longitude (at odd depths) and the targets after it on the other. A query descends only into the halves that
+ * overlap a box around the point, then checks each target in the box with {@link GeoMath#withinRange}, so
+ * results match isTargetWithinRange exactly in O(log n + k) time for k nearby targets.
+ * <p>
+ * The coordinate arrays are copied, so the tree can't be changed after it is built, and one tree can be shared
+ * by any number of threads. Each thread gets its own traversal state (the query box and a small stack) the
+ * first time it queries the tree and reuses it afterward, so queries don't allocate after that.
+ * <p>
+ * This tree serves BatchVisitChecker and TargetVisitChecker's tree-based getVisitCandidate. TargetGame doesn't
+ * use it: it projects its targets into a {@link LocalFrame} and, when there are many, indexes them in a
+ * {@link PackedRTree}.
+ */
+public final class TargetKdTree {
+
+    /**
+     * Relative amount by which the query box is widened, so that rounding in the conversion to degrees can
+     * never leave out a target that the distance check would accept.
+     */
+    private static final double BOX_MARGIN = 1.000001;
+
+    /** Latitude in degrees beyond which no longitude bound holds. */
+    private static final double POLE = 90;
+
+    /** Number of ints each pending run takes on the stack: start, end, and depth. */
+    private static final int STACK_FRAME = 3;
+
+    /** Latitudes of the targets, in their original order. */
+    private final double[] latitudes;
+
+    /** Longitudes of the targets, in their original order. */
+    private final double[] longitudes;
+
+    /** Target indexes in tree order. */
+    private final int[] order;
+
+    /** Latitude of each target in tree order. */
+    private final double[] treeLatitudes;
+
+    /** Longitude of each target in tree order. */
+    private final double[] treeLongitudes;
+
+    /** Smallest target index in the run each position splits, for skipping runs that can't hold a better result. */
+    private final int[] smallestIndex;
+
+    /** Number of ints in a traversal stack, enough for the deepest run of the tree. */
+    private final int stackSize;
+
+    /** Each thread's traversal state, created the first time the thread queries the tree. */
+    private final ThreadLocal<Traversal> traversals = new ThreadLocal<Traversal>() {
+        @Override
+        protected Traversal initialValue() {
+            return new Traversal(stackSize);
+        }
+    };
+
+    /**
+     * Builds a tree over a set of targets.
+     * @param setLatitudes the latitudes of the targets
+     * @param setLongitudes the longitudes of the targets (same order as latitudes)
+     */
+    public TargetKdTree(final double[] setLatitudes, final double[] setLongitudes) {
+        latitudes = setLatitudes.clone();
+        longitudes = setLongitudes.clone();
+        int count = latitudes.length;
+        order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        smallestIndex = new int[count];
+        build(0, count, 0);
+        treeLatitudes = new double[count];
+        treeLongitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            treeLatitudes[i] = latitudes[order[i]];
+            treeLongitudes[i] = longitudes[order[i]];
+        }
+        // Each level at most halves the run, and every popped run pushes at most two
+        int depth = Integer.SIZE - Integer.numberOfLeadingZeros(count) + 1;
+        stackSize = STACK_FRAME * (depth + 1);
+    }
+
+    /**
+     * Gets the number of targets in the tree.
+     * @return how many targets the tree was built from
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Finds all targets within range of a point.
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param range the maximum distance, in meters
+     * @param results array to receive the indexes of the targets in range, in no particular order (must be
+     *                large enough to hold all of them)
+     * @return how many targets are in range
+     */
+    public int search(final double latitude, final double longitude, final double range, final int[] results) {
+        int found = 0;
+        Traversal traversal = traversals.get();
+        int[] stack = traversal.stack;
+        int top = startQuery(traversal, latitude, longitude, range);
+        while (top > 0) {
+            top -= STACK_FRAME;
+            int start = stack[top];
+            int end = stack[top + 1];
+            int depth = stack[top + 2];
+            int middle = (start + end) >>> 1;
+            if (inBox(traversal, middle) && GeoMath.withinRange(treeLatitudes[middle], treeLongitudes[middle],
+                    latitude, longitude, range)) {
+                results[found] = order[middle];
+                found++;
+            }
+            top = pushHalves(traversal, top, start, middle, end, depth);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the lowest-indexed target within range of a point that is not on a path.
+     * <p>
+     * This is the target TargetVisitChecker.getVisitCandidate would find by checking every target in order.
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param range the maximum distance, in meters
+     * @param path indexes of targets visited so far (-1 for empty slots)
+     * @return the index of the target, or -1 if every target in range is on the path
+     */
+    public int firstUnvisited(final double latitude, final double longitude, final double range,
+                              final int[] path) {
+        return firstUnvisited(latitude, longitude, range, path, VisitPath.length(path), null);
+    }
+
+    /**
+     * Finds the lowest-indexed target within range of a point that is not on a path.
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param range the maximum distance, in meters
+     * @param path the targets visited so far
+     * @return the index of the target, or -1 if every target in range is on the path
+     */
+    public int firstUnvisited(final double latitude, final double longitude, final double range,
+                              final VisitPath path) {
+        return firstUnvisited(latitude, longitude, range, null, 0, path);
+    }
+
+    /**
+     * Finds the lowest-indexed target within range of a point that is not on a path given in either form.
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param range the maximum distance, in meters
+     * @param path the path array, or null to use the visit path
+     * @param pathLength the number of slots of the path array in use
+     * @param visitPath the visit path, or null to use the path array
+     * @return the index of the target, or -1 if every target in range is on the path
+     */
+    private int firstUnvisited(final double latitude, final double longitude, final double range,
+                               final int[] path, final int pathLength, final VisitPath visitPath) {
+        int best = Integer.MAX_VALUE;
+        Traversal traversal = traversals.get();
+        int[] stack = traversal.stack;
+        int top = startQuery(traversal, latitude, longitude, range);
+        while (top > 0) {
+            top -= STACK_FRAME;
+            int start = stack[top];
+            int end = stack[top + 1];
+            int depth = stack[top + 2];
+            int middle = (start + end) >>> 1;
+            if (smallestIndex[middle] >= best) {
+                continue;
+            }
+            int target = order[middle];
+            if (target < best && inBox(traversal, middle) && GeoMath.withinRange(treeLatitudes[middle],
+                    treeLongitudes[middle], latitude, longitude, range)
+                    && !visited(path, pathLength, visitPath, target)) {
+                best = target;
+            }
+            top = pushHalves(traversal, top, start, middle, end, depth);
+        }
+        if (best == Integer.MAX_VALUE) {
+            return -1;
+        }
+        return best;
+    }
+
+    /**
+     * Sets up the query box and pushes the whole tree onto the stack.
+     * @param traversal the calling thread's traversal state
+     * @param latitude the latitude of the query point
+     * @param longitude the longitude of the query point
+     * @param range the maximum distance, in meters
+     * @return the new stack top
+     */
+    private int startQuery(final Traversal traversal, final double latitude, final double longitude,
+                           final double range) {
+        double latitudeRange = range / GeoMath.LAT_DISTANCE_SCALE * BOX_MARGIN;
+        traversal.minLatitude = latitude - latitudeRange;
+        traversal.maxLatitude = latitude + latitudeRange;
+        // The distance check scales longitude by the target's latitude, which shrinks toward the poles,
+        // so the box must be wide enough for the most poleward latitude a match could have
+        double poleward = Math.max(Math.abs(traversal.minLatitude), Math.abs(traversal.maxLatitude));
+        double longitudeRange = Double.POSITIVE_INFINITY;
+        if (poleward < POLE) {
+            longitudeRange = range / (GeoMath.LNG_DISTANCE_SCALE
+                    * Math.cos(GeoMath.DEG_TO_RAD * poleward)) * BOX_MARGIN;
+        }
+        traversal.minLongitude = longitude - longitudeRange;
+        traversal.maxLongitude = longitude + longitudeRange;
+        if (order.length == 0) {
+            return 0;
+        }
+        return push(traversal.stack, 0, 0, order.length, 0);
+    }
+
+    /**
+     * Pushes the halves of a run that could overlap the query box.
+     * @param traversal the calling thread's traversal state
+     * @param top the current stack top
+     * @param start the start of the run (inclusive)
+     * @param middle the position of the run's splitting target
+     * @param end the end of the run (exclusive)
+     * @param depth the depth of the run's splitting target
+     * @return the new stack top
+     */
+    private int pushHalves(final Traversal traversal, final int top, final int start, final int middle,
+                           final int end, final int depth) {
+        double split;
+        double min;
+        double max;
+        if (depth % 2 == 0) {
+            split = treeLatitudes[middle];
+            min = traversal.minLatitude;
+            max = traversal.maxLatitude;
+        } else {
+            split = treeLongitudes[middle];
+            min = traversal.minLongitude;
+            max = traversal.maxLongitude;
+        }
+        int newTop = top;
+        if (middle > start && min <= split) {
+            newTop = push(traversal.stack, newTop, start, middle, depth + 1);
+        }
+        if (end > middle + 1 && max >= split) {
+            newTop = push(traversal.stack, newTop, middle + 1, end, depth + 1);
+        }
+        return newTop;
+    }
+
+    /**
+     * Pushes a run onto a traversal stack.
+     * @param stack the stack
+     * @param top the current stack top
+     * @param start the start of the run (inclusive)
+     * @param end the end of the run (exclusive)
+     * @param depth the depth of the run's splitting target
+     * @return the new stack top
+     */
+    private static int push(final int[] stack, final int top, final int start, final int end, final int depth) {
+        stack[top] = start;
+        stack[top + 1] = end;
+        stack[top + 2] = depth;
+        return top + STACK_FRAME;
+    }
+
+    /**
+     * Determines whether a target is inside the current query's box.
+     * @param traversal the calling thread's traversal state
+     * @param position the target's position in tree order
+     * @return whether it could be in range
+     */
+    private boolean inBox(final Traversal traversal, final int position) {
+        return treeLatitudes[position] >= traversal.minLatitude && treeLatitudes[position] <= traversal.maxLatitude
+                && treeLongitudes[position] >= traversal.minLongitude
+                && treeLongitudes[position] <= traversal.maxLongitude;
+    }
+
+    /**
+     * Determines whether a target is on a path given in either form.
+     * @param path the path array, or null to use the visit path
+     * @param pathLength the number of slots of the path array in use
+     * @param visitPath the visit path, or null to use the path array
+     * @param target the target index
+     * @return whether the target has been visited
+     */
+    private static boolean visited(final int[] path, final int pathLength, final VisitPath visitPath,
+                                   final int target) {
+        if (visitPath != null) {
+            return visitPath.isVisited(target);
+        }
+        for (int i = 0; i < pathLength; i++) {
+            if (path[i] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Arranges a run of the order array into a subtree.
+     * @param start the start of the run (inclusive)
+     * @param end the end of the run (exclusive)
+     * @param depth the depth of the run's splitting target
+     * @return the smallest target index in the run
+     */
+    private int build(final int start, final int end, final int depth) {
+        if (start >= end) {
+            return Integer.MAX_VALUE;
+        }
+        int middle = (start + end) >>> 1;
+        double[] keys = longitudes;
+        if (depth % 2 == 0) {
+            keys = latitudes;
+        }
+        select(keys, start, end, middle);
+        int smallest = Math.min(order[middle],
+                Math.min(build(start, middle, depth + 1), build(middle + 1, end, depth + 1)));
+        smallestIndex[middle] = smallest;
+        return smallest;
+    }
+
+    /**
+     * Partially sorts a run of the order array so that the target at one position is where it would be if the
+     * run were sorted, with no greater keys before it and no lesser keys after it.
+     * @param keys the coordinate to sort by, indexed by target
+     * @param start the start of the run (inclusive)
+     * @param end the end of the run (exclusive)
+     * @param position the position to settle
+     */
+    private void select(final double[] keys, final int start, final int end, final int position) {
+        int low = start;
+        int high = end - 1;
+        while (low < high) {
+            double pivot = keys[order[(low + high) >>> 1]];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) {
+                    i++;
+                }
+                while (keys[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (position <= j) {
+                high = j;
+            } else if (position >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * The state of one thread's queries: the current query's box and the stack of runs still to visit.
+     */
+    private static final class Traversal {
+
+        /** Stack of runs still to visit during a query. */
+        private final int[] stack;
+
+        /** The current query's southern bound. */
+        private double minLatitude;
+
+        /** The current query's northern bound. */
+        private double maxLatitude;
+
+        /** The current query's western bound. */
+        private double minLongitude;
+
+        /** The current query's eastern bound. */
+        private double maxLongitude;
+
+        /**
+         * Creates the state for a thread that hasn't queried the tree yet.
+         * @param stackSize the number of ints the stack needs
+         */
+        Traversal(final int stackSize) {
+            stack = new int[stackSize];
+        }
+
+    }
+
+}
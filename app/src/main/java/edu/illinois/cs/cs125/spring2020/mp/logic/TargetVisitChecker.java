@@ -15,8 +15,6 @@ package edu.illinois.cs.cs125.spring2020.mp.logic;
  * on to GameActivity to make the game work!
  */
 
-import com.google.android.gms.maps.model.LatLng;
-
 /**
  * Holds methods for managing a path of target claims.
  * <p>
@@ -70,11 +68,8 @@ public class TargetVisitChecker {
         // LatLngUtils.distance(oneLatitude, oneLongitude, otherLatitude, otherLongitude)
 
 
-        if (LatLngUtils.distance(latitudes[targetIndex], longitudes[targetIndex],
-                                 currentLatitude, currentLongitude) <= range) {
-            return true;
-        }
-        return false;
+        return GeoMath.withinRange(latitudes[targetIndex], longitudes[targetIndex],
+                currentLatitude, currentLongitude, range);
     }
 
     /**
@@ -91,7 +86,21 @@ public class TargetVisitChecker {
      */
     public static boolean isTargetVisited(final int[] path, final int targetIndex) {
         // HINT: The user can capture targets in many different orders. Target #0 is not necessarily captured first.
-        for (int i = 0; i < path.length; i++) {
+        // only the slots before the first -1 can hold a visited target
+        return isTargetVisited(path, VisitPath.length(path), targetIndex);
+    }
+
+    /**
+     * Determines whether a target is among the first entries of a path array.
+     * <p>
+     * Callers checking many targets against one path find its length once and pass it here.
+     * @param path indexes of targets visited so far, in the order they were visited (-1 for empty slots)
+     * @param length the number of visited targets, as returned by VisitPath.length
+     * @param targetIndex the index of the target to check for visitedness
+     * @return whether the specified target is already visited
+     */
+    private static boolean isTargetVisited(final int[] path, final int length, final int targetIndex) {
+        for (int i = 0; i < length; i++) {
             if (targetIndex == path[i]) {
                 return true;
             }
@@ -122,9 +131,11 @@ public class TargetVisitChecker {
         // HINT: Implement isTargetWithinRange and isTargetVisited (above) first.
         // Then you can call them in this function.
 
+        // only targets in range are looked up on the path, so find its length once
+        int visits = VisitPath.length(path);
         for (int i = 0; i < path.length; i++) {
             if (isTargetWithinRange(latitudes, longitudes, i, currentLatitude, currentLongitude, range)
-                    && !isTargetVisited(path, i)) {
+                    && !isTargetVisited(path, visits, i)) {
                 return i;
             }
         }
@@ -133,6 +144,100 @@ public class TargetVisitChecker {
 
 
 
+    /**
+     * Gets an index of an unvisited target within the specified range of the current location, searching a
+     * KD-tree over the targets instead of checking every one.
+     * <p>
+     * Gives the same result as the version taking coordinate arrays, in O(log n + k) time for k targets near the
+     * location. Large games build the tree once when their targets are known and keep it for the whole game.
+     * One tree can be queried from several threads at once.
+     * @param tree a tree over the coordinates of all targets
+     * @param path indexes of targets visited so far (same size as the number of targets, -1 for empty slots)
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @param range maximum distance to target, in meters
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getVisitCandidate(final TargetKdTree tree, final int[] path,
+                                        final double currentLatitude, final double currentLongitude,
+                                        final int range) {
+        return tree.firstUnvisited(currentLatitude, currentLongitude, range, path);
+    }
+
+    /**
+     * Determines whether the specified target is within range of the current location, using a game's
+     * local projection instead of recomputing the longitude scale for every target.
+     * <p>
+     * The same assumptions apply as for the version without a frame.
+     * @param frame the projection of the game area
+     * @param latitudes the latitudes of all targets in the game
+     * @param longitudes the longitudes of all targets in the game (same order as latitudes)
+     * @param targetIndex the index (into the coordinate arrays) of the target to check for proximity
+     * @param currentLatitude the player's current latitude
+     * @param currentLongitude the player's current longitude
+     * @param range the proximity threshold
+     * @return whether the target at the specified index is within range of the current location
+     */
+    public static boolean isTargetWithinRange(final LocalFrame frame,
+                                              final double[] latitudes, final double[] longitudes,
+                                              final int targetIndex,
+                                              final double currentLatitude, final double currentLongitude,
+                                              final int range) {
+        return frame.withinRange(latitudes[targetIndex], longitudes[targetIndex],
+                currentLatitude, currentLongitude, range);
+    }
+
+    /**
+     * Gets an index of an unvisited target within range of the current location, using a game's proximity
+     * check so that far-away targets are rejected without computing their distance.
+     * <p>
+     * The same assumptions apply as for the version without a frame. Nothing is allocated: each target in range
+     * is looked up in the visited part of the path array. Large games should keep a VisitPath of their own and
+     * pass it to the other overload instead, so each lookup takes constant time.
+     * @param proximity the game's proximity check, created once for its threshold
+     * @param latitudes the latitudes of all targets
+     * @param longitudes the longitudes of all targets (same order as latitudes)
+     * @param path indexes of targets visited so far (same size as latitudes, -1 for empty slots)
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getVisitCandidate(final ProximityCheck proximity,
+                                        final double[] latitudes, final double[] longitudes, final int[] path,
+                                        final double currentLatitude, final double currentLongitude) {
+        int visits = VisitPath.length(path);
+        for (int i = 0; i < latitudes.length; i++) {
+            if (proximity.inRange(latitudes[i], longitudes[i], currentLatitude, currentLongitude)
+                    && !isTargetVisited(path, visits, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets an index of an unvisited target within range of the current location, given a path whose visited
+     * targets can be looked up in constant time.
+     * @param proximity the game's proximity check, created once for its threshold
+     * @param latitudes the latitudes of all targets
+     * @param longitudes the longitudes of all targets (same order as latitudes)
+     * @param path the targets visited so far
+     * @param currentLatitude the current latitude
+     * @param currentLongitude the current longitude
+     * @return the index of a target within the range that is not on the path, or -1 if no such target exists
+     */
+    public static int getVisitCandidate(final ProximityCheck proximity,
+                                        final double[] latitudes, final double[] longitudes, final VisitPath path,
+                                        final double currentLatitude, final double currentLongitude) {
+        for (int i = 0; i < latitudes.length; i++) {
+            if (proximity.inRange(latitudes[i], longitudes[i], currentLatitude, currentLongitude)
+                    && !path.isVisited(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Determines whether the specified target can be visited without violating the snake rule.
      * <p>
@@ -158,17 +263,11 @@ public class TargetVisitChecker {
     public static boolean checkSnakeRule(final double[] latitudes, final double[] longitudes,
                                          final int[] path, final int tryVisit) {
         // HINT: To determine whether two lines cross, use a provided helper function:
-        // LineCrossDetector.linesCross(oneStartLat, oneStartLng, oneEndLat, oneEndLng,
-        //                              otherStartLat, otherStartLng, otherEndLat, otherEndLng)
+        // SegmentMath.linesCross(latitudes, longitudes, oneStart, oneEnd, otherStart, otherEnd)
 
 
         // get index of the last visited target in the path array
-        int visitedEndIndex = -1;
-        for (int i = 0; i < path.length; i++) {
-            if (path[i] != -1) {
-                visitedEndIndex += 1;
-            }
-        }
+        int visitedEndIndex = VisitPath.length(path) - 1;
 
         // if {0, 1, 2} targets have been visited,
         // any other target can be visited without violating the snake rule
@@ -180,21 +279,12 @@ public class TargetVisitChecker {
             // end index before reaching the last visited target because the new line under
                 // consideration can't possibly cross this previous line (documentation verified)
             for (int j = 1; j < visitedEndIndex; j++) {
-                // create LatLng object for each line endpoint of interest
-                    // begin consecutive line
-                LatLng consecutiveBegin = new LatLng(latitudes[path[j - 1]],
-                                                     longitudes[path[j - 1]]);
-                    // end consecutive line
-                LatLng consecutiveEnd = new LatLng(latitudes[path[j]], longitudes[path[j]]);
-                    // location of last visited target
-                LatLng crossCheckBegin = new LatLng(latitudes[path[visitedEndIndex]],
-                                                    longitudes[path[visitedEndIndex]]);
-                    // location of target that is being checked for snake rule compliance
-                LatLng crossCheckEnd = new LatLng(latitudes[tryVisit], longitudes[tryVisit]);
+                // check the line between consecutively visited targets against the line from the
+                // last visited target to the target that is being checked for snake rule compliance
                 // if the newly created line is found to cross any previous lines created by
                 // consecutively visited targets, the snake rule is violated
-                if (LineCrossDetector.linesCross(consecutiveBegin, consecutiveEnd,
-                                                 crossCheckBegin, crossCheckEnd)) {
+                if (SegmentMath.linesCross(latitudes, longitudes, path[j - 1], path[j],
+                                                 path[visitedEndIndex], tryVisit)) {
                     return false;
                 }
             }
@@ -202,6 +292,44 @@ public class TargetVisitChecker {
         }
     }
 
+    /**
+     * Determines whether the specified target can be claimed without violating the snake rule, given a path
+     * that knows its own length.
+     * @param latitudes latitudes of all targets
+     * @param longitudes longitudes of all targets (same order as latitudes)
+     * @param path the targets visited so far
+     * @param tryVisit index of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final double[] latitudes, final double[] longitudes,
+                                         final VisitPath path, final int tryVisit) {
+        int last = path.last();
+        for (int j = 1; j < path.size() - 1; j++) {
+            if (SegmentMath.linesCross(latitudes, longitudes, path.get(j - 1), path.get(j), last, tryVisit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a new line can be added to a set of existing path lines without crossing any of them.
+     * <p>
+     * This is the snake rule check for callers that keep the lines of the path (or of all players' paths) in
+     * a SegmentSet as they are created, so the whole set is checked in one pass over its arrays.
+     * @param pathLines the existing lines, in the same coordinates as the new line
+     * @param fromLatitude latitude of the last captured target
+     * @param fromLongitude longitude of the last captured target
+     * @param toLatitude latitude of the target to try to visit
+     * @param toLongitude longitude of the target to try to visit
+     * @return whether the target can be claimed
+     */
+    public static boolean checkSnakeRule(final SegmentSet pathLines,
+                                         final double fromLatitude, final double fromLongitude,
+                                         final double toLatitude, final double toLongitude) {
+        return SegmentMath.firstCrossing(pathLines, fromLatitude, fromLongitude,
+                toLatitude, toLongitude) < 0;
+    }
 
 
 
@@ -217,14 +345,8 @@ public class TargetVisitChecker {
     public static int visitTarget(final int[] path, final int targetIndex) {
 
         // get index of the first available slot in the path array (first not visited slot)
-            // next available = index of last visited target + 1
-            // this is why notVisitedBeginIndex is initialized as 0 instead of -1
-        int notVisitedBeginIndex = 0;
-        for (int i = 0; i < path.length; i++) {
-            if (path[i] != -1) {
-                notVisitedBeginIndex += 1;
-            }
-        }
+            // the -1 slots are contiguous at the end, so a binary search finds the first one
+        int notVisitedBeginIndex = VisitPath.length(path);
 
         // if the index is == length of the array, it is out of bounds by +1
         if (notVisitedBeginIndex >= path.length) {
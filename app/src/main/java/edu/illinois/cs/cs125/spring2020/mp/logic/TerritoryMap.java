@@ -0,0 +1,413 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups an area mode grid's captured cells into territories: regions of cells owned by the same team that
+ * share sides. Each territory can be drawn as one polygon (with holes where it surrounds other cells) instead
+ * of one polygon per cell.
+ * <p>
+ * Every territory has an ID, which is never reused. When a cell changes owner, only the territories touching
+ * it are affected: its old territory may split and the new owner's neighboring territories merge with it.
+ * Those territories are relabeled by flooding just their cells, and {@link #ownerChanged} reports which IDs went
+ * away and which were created, so a caller only has to redraw those. The owners themselves are read from the
+ * game's CellOwnership rather than copied.
+ * <p>
+ * Outlines are traced along the grid lines between a territory's cells and other cells, turning toward the
+ * territory wherever there is a choice, so cells touching only at a corner are never joined. Points are grid
+ * corners: corner (i, j) is the southwest corner of cell (i, j), and the grid's corners run from (0, 0) to
+ * (xCells, yCells).
+ */
+public final class TerritoryMap {
+
+    /** Direction along a grid line: toward greater X. */
+    private static final int EAST = 0;
+
+    /** Direction along a grid line: toward greater Y. */
+    private static final int NORTH = 1;
+
+    /** Direction along a grid line: toward smaller X. */
+    private static final int WEST = 2;
+
+    /** Direction along a grid line: toward smaller Y. */
+    private static final int SOUTH = 3;
+
+    /** Number of directions. */
+    private static final int DIRECTIONS = 4;
+
+    /** Number of cells in the X direction. */
+    private final int xCells;
+
+    /** Number of cells in the Y direction. */
+    private final int yCells;
+
+    /** Team owning each cell, shared with the game. */
+    private final CellOwnership owners;
+
+    /** Territory ID of each cell, by cell ID, or -1 if the cell isn't captured. */
+    private final int[] labels;
+
+    /** Team of each territory, by territory ID. */
+    private final IntList teams = new IntList();
+
+    /** A cell in each territory, by territory ID, from which the rest can be found. */
+    private final IntList seeds = new IntList();
+
+    /** Number of cells in each territory, by territory ID. */
+    private final IntList sizes = new IntList();
+
+    /** Stack of cells left to visit during a flood. */
+    private final IntList stack = new IntList();
+
+    /** For each cell, the number of the last outline trace that visited it. */
+    private final int[] visits;
+
+    /** The number of outline traces so far. */
+    private int traces;
+
+    /**
+     * Creates a map of a grid's territories.
+     * @param setOwners the team owning each cell, which the caller keeps updating
+     */
+    public TerritoryMap(final CellOwnership setOwners) {
+        owners = setOwners;
+        xCells = setOwners.getXCells();
+        yCells = setOwners.getYCells();
+        labels = new int[owners.size()];
+        visits = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = -1;
+        }
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] < 0 && owners.get(cell) != TeamID.OBSERVER) {
+                flood(cell, owners.get(cell));
+            }
+        }
+    }
+
+    /**
+     * Updates the territories around a cell after its owner was changed in the CellOwnership.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param old the team that owned the cell before, or TeamID.OBSERVER if it wasn't captured
+     * @param removed list to receive the IDs of territories that no longer exist
+     * @param added list to receive the IDs of territories that were created
+     */
+    public void ownerChanged(final int x, final int y, final int old, final IntList removed, final IntList added) {
+        int cell = y * xCells + x;
+        int team = owners.get(cell);
+        if (old == team) {
+            return;
+        }
+        int oldLabel = labels[cell];
+        if (oldLabel >= 0) {
+            removed.add(oldLabel);
+        }
+        int[] neighbors = neighborsOf(x, y);
+        if (team != TeamID.OBSERVER) {
+            for (int neighbor : neighbors) {
+                if (neighbor >= 0 && owners.get(neighbor) == team && !contains(removed, labels[neighbor])) {
+                    removed.add(labels[neighbor]);
+                }
+            }
+        }
+        labels[cell] = -1;
+
+        // what is left of the old territory, which may now be in several pieces
+        if (oldLabel >= 0) {
+            for (int neighbor : neighbors) {
+                if (neighbor >= 0 && labels[neighbor] == oldLabel) {
+                    added.add(flood(neighbor, old));
+                }
+            }
+        }
+        // the cell and every territory of the same team it touches
+        if (team != TeamID.OBSERVER) {
+            added.add(flood(cell, team));
+        }
+    }
+
+    /**
+     * Gets the team owning a cell.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the owning team, or TeamID.OBSERVER if the cell isn't captured
+     */
+    public int getOwner(final int x, final int y) {
+        return owners.get(x, y);
+    }
+
+    /**
+     * Gets the territory a cell belongs to.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the territory ID, or -1 if the cell isn't captured
+     */
+    public int territoryOf(final int x, final int y) {
+        return labels[y * xCells + x];
+    }
+
+    /**
+     * Gets the team owning a territory.
+     * @param territory the territory ID
+     * @return the owning team
+     */
+    public int getTeam(final int territory) {
+        return teams.get(territory);
+    }
+
+    /**
+     * Gets the number of cells in a territory.
+     * @param territory the territory ID
+     * @return the number of cells, or 0 if the territory no longer exists
+     */
+    public int getSize(final int territory) {
+        if (labels[seeds.get(territory)] != territory) {
+            return 0;
+        }
+        return sizes.get(territory);
+    }
+
+    /**
+     * Traces the outline of a territory.
+     * <p>
+     * Each ring is an array of grid corners (X then Y for each point) with only the points where the outline
+     * turns. The first ring is the outer edge, counterclockwise; any others are holes, clockwise.
+     * @param territory the territory ID, which must still exist
+     * @return the rings of the outline
+     */
+    public List<int[]> outline(final int territory) {
+        // every side between a territory cell and anything else, directed with the territory on its left
+        Map<Integer, Integer> edges = new HashMap<>();
+        traces++;
+        stack.clear();
+        stack.add(seeds.get(territory));
+        visits[seeds.get(territory)] = traces;
+        while (!stack.isEmpty()) {
+            int cell = stack.removeLast();
+            int x = cell % xCells;
+            int y = cell / xCells;
+            int[] neighbors = neighborsOf(x, y);
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                int neighbor = neighbors[direction];
+                if (neighbor >= 0 && labels[neighbor] == territory) {
+                    if (visits[neighbor] != traces) {
+                        visits[neighbor] = traces;
+                        stack.add(neighbor);
+                    }
+                    continue;
+                }
+                // the side facing this neighbor runs counterclockwise around the cell
+                int start = sideStart(x, y, direction);
+                int along = (direction + 1) % DIRECTIONS;
+                Integer mask = edges.get(start);
+                int bits = 1 << along;
+                if (mask != null) {
+                    bits |= mask;
+                }
+                edges.put(start, bits);
+            }
+        }
+
+        List<int[]> outer = new ArrayList<>();
+        List<int[]> holes = new ArrayList<>();
+        while (!edges.isEmpty()) {
+            int[] ring = traceRing(edges);
+            if (signedArea(ring) > 0) {
+                outer.add(ring);
+            } else {
+                holes.add(ring);
+            }
+        }
+        outer.addAll(holes);
+        return outer;
+    }
+
+    /**
+     * HELPER FUNCTION: follows edges from any remaining one until returning to it, removing them as it goes.
+     * @param edges outgoing edge directions (bit masks) by starting corner
+     * @return the ring's corners where it turns, X then Y for each
+     */
+    private int[] traceRing(final Map<Integer, Integer> edges) {
+        int start = edges.keySet().iterator().next();
+        int startDirection = Integer.numberOfTrailingZeros(edges.get(start));
+        removeEdge(edges, start, startDirection);
+        IntList corners = new IntList();
+        corners.add(start);
+        int corner = start;
+        int direction = startDirection;
+        while (true) {
+            corner = step(corner, direction);
+            int next = -1;
+            boolean closed = false;
+            // prefer turning left (toward the territory), then going straight, then turning right
+            for (int turn = 1; turn >= -1; turn--) {
+                int candidate = (direction + turn + DIRECTIONS) % DIRECTIONS;
+                if (corner == start && candidate == startDirection) {
+                    closed = true;
+                    break;
+                }
+                Integer mask = edges.get(corner);
+                if (mask != null && (mask & (1 << candidate)) != 0) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (closed) {
+                break;
+            }
+            removeEdge(edges, corner, next);
+            if (next != direction) {
+                corners.add(corner);
+            }
+            direction = next;
+        }
+        // if the ring ends heading the way it started, the start is partway along a side, not a turn
+        int first = 0;
+        if (direction == startDirection) {
+            first = 1;
+        }
+        int[] ring = new int[(corners.size() - first) * 2];
+        for (int i = first; i < corners.size(); i++) {
+            ring[2 * (i - first)] = corners.get(i) % (xCells + 1);
+            ring[2 * (i - first) + 1] = corners.get(i) / (xCells + 1);
+        }
+        return ring;
+    }
+
+    /**
+     * HELPER FUNCTION: gives a new ID to a cell and every cell of the same team connected to it by sides.
+     * @param from the cell to start from
+     * @param team the team owning the cell
+     * @return the new territory's ID
+     */
+    private int flood(final int from, final int team) {
+        int territory = teams.size();
+        teams.add(team);
+        seeds.add(from);
+        int size = 0;
+        stack.clear();
+        stack.add(from);
+        labels[from] = territory;
+        while (!stack.isEmpty()) {
+            int cell = stack.removeLast();
+            size++;
+            for (int neighbor : neighborsOf(cell % xCells, cell / xCells)) {
+                if (neighbor >= 0 && labels[neighbor] != territory && owners.get(neighbor) == team) {
+                    labels[neighbor] = territory;
+                    stack.add(neighbor);
+                }
+            }
+        }
+        sizes.add(size);
+        return territory;
+    }
+
+    /**
+     * HELPER FUNCTION: gets the cells sharing a side with a cell.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @return the IDs of the cells to the east, north, west, and south, each -1 if outside the grid
+     */
+    private int[] neighborsOf(final int x, final int y) {
+        int[] neighbors = {-1, -1, -1, -1};
+        int cell = y * xCells + x;
+        if (x + 1 < xCells) {
+            neighbors[EAST] = cell + 1;
+        }
+        if (y + 1 < yCells) {
+            neighbors[NORTH] = cell + xCells;
+        }
+        if (x > 0) {
+            neighbors[WEST] = cell - 1;
+        }
+        if (y > 0) {
+            neighbors[SOUTH] = cell - xCells;
+        }
+        return neighbors;
+    }
+
+    /**
+     * HELPER FUNCTION: gets the corner a cell's side starts at, going counterclockwise around the cell.
+     * @param x the cell's X index
+     * @param y the cell's Y index
+     * @param direction which side, by the direction it faces
+     * @return the corner's ID (Y times the number of corners across, plus X)
+     */
+    private int sideStart(final int x, final int y, final int direction) {
+        int cornerX = x;
+        int cornerY = y;
+        if (direction == EAST || direction == NORTH) {
+            cornerX++;
+        }
+        if (direction == NORTH || direction == WEST) {
+            cornerY++;
+        }
+        return cornerY * (xCells + 1) + cornerX;
+    }
+
+    /**
+     * HELPER FUNCTION: moves from a corner to the next one along a grid line.
+     * @param corner the corner's ID
+     * @param direction the direction to move
+     * @return the next corner's ID
+     */
+    private int step(final int corner, final int direction) {
+        if (direction == EAST) {
+            return corner + 1;
+        } else if (direction == NORTH) {
+            return corner + xCells + 1;
+        } else if (direction == WEST) {
+            return corner - 1;
+        }
+        return corner - xCells - 1;
+    }
+
+    /**
+     * HELPER FUNCTION: removes one outgoing edge from a corner.
+     * @param edges outgoing edge directions (bit masks) by starting corner
+     * @param corner the corner's ID
+     * @param direction the edge's direction
+     */
+    private static void removeEdge(final Map<Integer, Integer> edges, final int corner, final int direction) {
+        int mask = edges.get(corner) & ~(1 << direction);
+        if (mask == 0) {
+            edges.remove(corner);
+        } else {
+            edges.put(corner, mask);
+        }
+    }
+
+    /**
+     * HELPER FUNCTION: computes twice the signed area of a ring, positive if it runs counterclockwise.
+     * @param ring the ring's corners, X then Y for each
+     * @return twice the signed area
+     */
+    private static long signedArea(final int[] ring) {
+        long area = 0;
+        for (int i = 0; i < ring.length; i += 2) {
+            int next = (i + 2) % ring.length;
+            area += (long) ring[i] * ring[next + 1] - (long) ring[next] * ring[i + 1];
+        }
+        return area;
+    }
+
+    /**
+     * HELPER FUNCTION: checks whether a list holds a value.
+     * @param list the list
+     * @param value the value
+     * @return whether any element equals the value
+     */
+    private static boolean contains(final IntList list, final int value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,129 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+/**
+ * Decides whether points are within a fixed distance of each other on the surface of the Earth, with
+ * great-circle accuracy but usually without great-circle cost.
+ * <p>
+ * Each pair is first measured with the equirectangular approximation: longitude differences are scaled by the
+ * cosine of the pair's mean latitude, and the result is treated as planar. Over the distances a proximity
+ * threshold covers, that is off from the haversine distance by far less than a part in a thousand. If the
+ * approximate distance is clearly inside or outside the threshold, that settles it. Only a pair whose
+ * approximate distance is within an uncertainty band around the threshold is measured again with
+ * {@link GeoMath#haversineDistance}.
+ * <p>
+ * Unlike {@link LocalFrame}, nothing depends on the size of the area, so this stays correct for games that span
+ * many kilometers.
+ */
+public final class TieredDistance {
+
+    /** Default width of the uncertainty band, as a fraction of the threshold. */
+    public static final double DEFAULT_BAND = 0.001;
+
+    /** Meters per degree of latitude or of longitude at the equator, on the same sphere as the haversine. */
+    private static final double METERS_PER_DEGREE = GeoMath.EARTH_RADIUS * GeoMath.DEG_TO_RAD;
+
+    /** Degrees of longitude around the world. */
+    private static final double FULL_CIRCLE = 360;
+
+    /** Largest difference in longitude between two points, going the short way around. */
+    private static final double HALF_CIRCLE = 180;
+
+    /** The threshold distance, in meters. */
+    private final double threshold;
+
+    /** The square of the largest approximate distance that is surely within the threshold. */
+    private final double innerSquared;
+
+    /** The square of the smallest approximate distance that is surely beyond the threshold. */
+    private final double outerSquared;
+
+    /** Difference in latitude beyond which points are surely beyond the threshold, in degrees. */
+    private final double latitudeRange;
+
+    /**
+     * Creates a distance check with the default uncertainty band.
+     * @param setThreshold the maximum distance, in meters
+     */
+    public TieredDistance(final double setThreshold) {
+        this(setThreshold, DEFAULT_BAND);
+    }
+
+    /**
+     * Creates a distance check.
+     * @param setThreshold the maximum distance, in meters
+     * @param band the fraction of the threshold by which the approximate distance may be off; pairs whose
+     *             approximate distance is within this much of the threshold are measured exactly
+     */
+    public TieredDistance(final double setThreshold, final double band) {
+        if (band < 0 || band >= 1) {
+            throw new IllegalArgumentException("band must be at least 0 and less than 1");
+        }
+        threshold = setThreshold;
+        double inner = setThreshold * (1 - band);
+        double outer = setThreshold * (1 + band);
+        innerSquared = inner * inner;
+        outerSquared = outer * outer;
+        latitudeRange = outer / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Gets the threshold distance.
+     * @return the maximum distance, in meters
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Determines whether two points are within the threshold of each other.
+     * <p>
+     * Gives the same result as comparing {@link GeoMath#haversineDistance} against the threshold, as long
+     * as the approximation is no further off than the band.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return whether the points are no more than the threshold apart
+     */
+    public boolean inRange(final double oneLat, final double oneLng,
+                           final double anotherLat, final double anotherLng) {
+        // The north-south distance alone can rule a point out without any trigonometry
+        if (Math.abs(oneLat - anotherLat) > latitudeRange) {
+            return false;
+        }
+        double approximate = approximateDistanceSquared(oneLat, oneLng, anotherLat, anotherLng);
+        if (approximate <= innerSquared) {
+            return true;
+        }
+        if (approximate > outerSquared) {
+            return false;
+        }
+        return GeoMath.haversineDistance(oneLat, oneLng, anotherLat, anotherLng) <= threshold;
+    }
+
+    /**
+     * Computes the squared equirectangular distance between two points.
+     * <p>
+     * The longitude difference is taken the short way around, so points on either side of the antimeridian
+     * are close together, as they are for the haversine distance.
+     * @param oneLat the latitude of one point
+     * @param oneLng the longitude of that point
+     * @param anotherLat the latitude of another point
+     * @param anotherLng the longitude of that other point
+     * @return the approximate squared distance between the points, in square meters
+     */
+    static double approximateDistanceSquared(final double oneLat, final double oneLng,
+                                             final double anotherLat, final double anotherLng) {
+        double latDistance = METERS_PER_DEGREE * (oneLat - anotherLat);
+        double lngDifference = oneLng - anotherLng;
+        if (lngDifference > HALF_CIRCLE) {
+            lngDifference -= FULL_CIRCLE;
+        } else if (lngDifference < -HALF_CIRCLE) {
+            lngDifference += FULL_CIRCLE;
+        }
+        double lngDistance = METERS_PER_DEGREE * lngDifference
+                * Math.cos(GeoMath.DEG_TO_RAD * (oneLat + anotherLat) / 2);
+        return latDistance * latDistance + lngDistance * lngDistance;
+    }
+
+}
@@ -0,0 +1,126 @@
+package edu.illinois.cs.cs125.spring2020.mp.logic;
+
+import java.util.BitSet;
+
+/**
+ * Tracks the targets a player has captured: the order they were captured in and which ones have been captured.
+ * <p>
+ * The order is kept in an array like the path arrays of TargetVisitChecker, along with the number of slots in
+ * use and a BitSet of the captured target indexes. Capturing a target, checking whether one is captured, and
+ * finding the last capture all take constant time, where the path array alone needs a scan for each.
+ */
+public final class VisitPath {
+
+    /** Indexes of the captured targets, in the order they were captured. */
+    private final int[] order;
+
+    /** Which target indexes have been captured. */
+    private final BitSet visited;
+
+    /** The number of targets captured. */
+    private int length;
+
+    /**
+     * Creates an empty path.
+     * @param targetCount the number of targets in the game, which is the most the path can hold
+     */
+    public VisitPath(final int targetCount) {
+        order = new int[targetCount];
+        visited = new BitSet(targetCount);
+    }
+
+    /**
+     * Creates a path holding the captures recorded in a path array.
+     * <p>
+     * The array is not modified or kept.
+     * @param path indexes of targets visited so far, in the order they were visited (-1 for empty slots)
+     * @return a path with the same captures, able to hold as many targets as the array
+     */
+    public static VisitPath fromArray(final int[] path) {
+        VisitPath visitPath = new VisitPath(path.length);
+        int count = length(path);
+        for (int i = 0; i < count; i++) {
+            visitPath.visit(path[i]);
+        }
+        return visitPath;
+    }
+
+    /**
+     * Finds how many slots of a path array are in use.
+     * <p>
+     * Since the empty (-1) slots are all at the end, this is a binary search for the first of them.
+     * @param path indexes of targets visited so far, in the order they were visited (-1 for empty slots)
+     * @return the number of targets in the path, which is also the index of the first empty slot
+     */
+    public static int length(final int[] path) {
+        int low = 0;
+        int high = path.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (path[middle] == -1) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Records the capture of a target.
+     * <p>
+     * It is assumed that the target has not been captured yet.
+     * @param targetIndex the index of the target being captured
+     * @return the position in the path the target was put at, or -1 if the path was full
+     */
+    public int visit(final int targetIndex) {
+        if (length == order.length) {
+            return -1;
+        }
+        order[length] = targetIndex;
+        visited.set(targetIndex);
+        length++;
+        return length - 1;
+    }
+
+    /**
+     * Determines whether a target has been captured.
+     * @param targetIndex the index of the target
+     * @return whether the target is on the path
+     */
+    public boolean isVisited(final int targetIndex) {
+        return visited.get(targetIndex);
+    }
+
+    /**
+     * Gets the number of targets captured.
+     * @return the length of the path
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Gets a target on the path.
+     * @param position the position on the path (0 for the first capture)
+     * @return the index of the target captured at that position
+     */
+    public int get(final int position) {
+        if (position >= length) {
+            throw new IndexOutOfBoundsException("Position " + position + " of a path of length " + length);
+        }
+        return order[position];
+    }
+
+    /**
+     * Gets the most recently captured target.
+     * @return the index of the last target on the path, or -1 if nothing has been captured
+     */
+    public int last() {
+        if (length == 0) {
+            return -1;
+        }
+        return order[length - 1];
+    }
+
+}
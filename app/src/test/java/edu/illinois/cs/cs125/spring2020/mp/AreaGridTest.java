@@ -0,0 +1,276 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.PolygonOptions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.AreaDivider;
+import edu.illinois.cs.cs125.spring2020.mp.logic.AreaGrid;
+import edu.illinois.cs.cs125.spring2020.mp.logic.AreaTileProvider;
+import edu.illinois.cs.cs125.spring2020.mp.logic.CellOwnership;
+import edu.illinois.cs.cs125.spring2020.mp.logic.IntList;
+import edu.illinois.cs.cs125.spring2020.mp.logic.LatLngUtils;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TeamID;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TerritoryMap;
+
+/**
+ * Checks the area mode grid helpers used for drawing: cell geometry and ranges, map tiles, grid lines, and outlines.
+ */
+public class AreaGridTest {
+
+    @Test
+    public void testAreaDividerGeometry() {
+        Random random = new Random(125);
+        for (int run = 0; run < 500; run++) {
+            double south = 40 + random.nextDouble();
+            double west = -88.5 + random.nextDouble();
+            double north = south + random.nextDouble() * 0.02;
+            double east = west + random.nextDouble() * 0.02;
+            AreaDivider divider = new AreaDivider(north, east, south, west, 20 + random.nextInt(200));
+            AreaGrid grid = new AreaGrid(divider);
+
+            // the precomputed distances must match what the helpers used to compute on every call
+            for (int i = 0; i < 20; i++) {
+                LatLng location = new LatLng(south + random.nextDouble() * (north - south),
+                        west + random.nextDouble() * (east - west));
+                Assert.assertEquals(LatLngUtils.distance(south, location.longitude, south, west),
+                        divider.getUniDirection('x', location), 0);
+                Assert.assertEquals(LatLngUtils.distance(location.latitude, west, south, west),
+                        divider.getUniDirection('y', location), 0);
+                int x = divider.getXIndex(location);
+                int y = divider.getYIndex(location);
+                if (grid.isInGrid(x, y)) {
+                    Assert.assertNotNull(divider.getCellBounds(x, y));
+                    int cell = grid.cellId(x, y);
+                    Assert.assertEquals(x, grid.cellX(cell));
+                    Assert.assertEquals(y, grid.cellY(cell));
+                    Assert.assertTrue(cell < grid.getCellCount());
+                }
+            }
+            Assert.assertEquals(divider.getXCells(), grid.getXCells());
+            Assert.assertEquals(divider.getYCells(), grid.getYCells());
+            Assert.assertFalse(grid.isInGrid(-1, 0));
+            Assert.assertFalse(grid.isInGrid(grid.getXCells(), 0));
+            Assert.assertFalse(grid.isInGrid(0, grid.getYCells()));
+
+            // callers get copies, which can't change the grid
+            double[][] bounds = divider.getGridBounds();
+            Assert.assertEquals(divider.getXCells() + 1, bounds[0].length);
+            Assert.assertEquals(divider.getYCells() + 1, bounds[1].length);
+            bounds[0][0] = 0;
+            Assert.assertEquals(west, divider.getGridBounds()[0][0], 0);
+        }
+    }
+
+    @Test
+    public void testCellsIntersecting() {
+        Random random = new Random(125);
+        int[] range = new int[4];
+        for (int run = 0; run < 300; run++) {
+            double south = 40 + random.nextDouble();
+            double west = -88.5 + random.nextDouble();
+            double north = south + random.nextDouble() * 0.02;
+            double east = west + random.nextDouble() * 0.02;
+            AreaDivider divider = new AreaDivider(north, east, south, west, 20 + random.nextInt(200));
+            AreaGrid grid = new AreaGrid(divider);
+            for (int x = 0; x < divider.getXCells(); x++) {
+                for (int y = 0; y < divider.getYCells(); y++) {
+                    LatLngBounds cell = divider.getCellBounds(x, y);
+                    Assert.assertEquals(cell.southwest.longitude, grid.getCellWest(x), 0);
+                    Assert.assertEquals(cell.northeast.longitude, grid.getCellEast(x), 0);
+                    Assert.assertEquals(cell.southwest.latitude, grid.getCellSouth(y), 0);
+                    Assert.assertEquals(cell.northeast.latitude, grid.getCellNorth(y), 0);
+                }
+            }
+
+            for (int box = 0; box < 20; box++) {
+                double boxSouth = south - 0.005 + random.nextDouble() * (north - south + 0.01);
+                double boxWest = west - 0.005 + random.nextDouble() * (east - west + 0.01);
+                double boxNorth = boxSouth + random.nextDouble() * 0.01;
+                double boxEast = boxWest + random.nextDouble() * 0.01;
+                if (box == 0) {
+                    // a box exactly on the grid's corners
+                    boxSouth = grid.getCellSouth(0);
+                    boxWest = grid.getCellWest(0);
+                    boxNorth = grid.getCellNorth(divider.getYCells() - 1);
+                    boxEast = grid.getCellEast(divider.getXCells() - 1);
+                }
+                LatLngBounds bounds = new LatLngBounds(new LatLng(boxSouth, boxWest), new LatLng(boxNorth, boxEast));
+
+                // compare against checking every cell
+                int minX = Integer.MAX_VALUE;
+                int minY = Integer.MAX_VALUE;
+                int maxX = -1;
+                int maxY = -1;
+                int count = 0;
+                for (int x = 0; x < divider.getXCells(); x++) {
+                    for (int y = 0; y < divider.getYCells(); y++) {
+                        LatLngBounds cell = divider.getCellBounds(x, y);
+                        if (cell.southwest.longitude <= boxEast && cell.northeast.longitude >= boxWest
+                                && cell.southwest.latitude <= boxNorth && cell.northeast.latitude >= boxSouth) {
+                            minX = Math.min(minX, x);
+                            minY = Math.min(minY, y);
+                            maxX = Math.max(maxX, x);
+                            maxY = Math.max(maxY, y);
+                            count++;
+                        }
+                    }
+                }
+                Assert.assertEquals(count, grid.cellsIntersecting(bounds, range));
+                if (count == 0) {
+                    Assert.assertArrayEquals(new int[] {-1, -1, -1, -1}, range);
+                } else {
+                    Assert.assertArrayEquals(new int[] {minX, minY, maxX, maxY}, range);
+                }
+            }
+
+            // a box across the antimeridian covers everything east of its west edge
+            LatLngBounds wrapping = new LatLngBounds(new LatLng(south, (west + east) / 2), new LatLng(north, -179));
+            Assert.assertTrue(grid.cellsIntersecting(wrapping, range) > 0);
+            Assert.assertEquals(divider.getXCells() - 1, range[2]);
+            wrapping = new LatLngBounds(new LatLng(south, 179), new LatLng(north, -179));
+            Assert.assertEquals(0, grid.cellsIntersecting(wrapping, range));
+        }
+    }
+
+    @Test
+    public void testTileBounds() {
+        // the whole Web Mercator map, whose east edge must stay at 180 rather than wrapping to -180
+        double[] world = new double[4];
+        AreaTileProvider.tileBounds(0, 0, 0, world);
+        Assert.assertEquals(-85.0511287798, world[0], 1e-9);
+        Assert.assertEquals(-180, world[1], 1e-9);
+        Assert.assertEquals(85.0511287798, world[2], 1e-9);
+        Assert.assertEquals(180, world[3], 1e-9);
+
+        double[] tile = new double[4];
+        double[] neighbor = new double[4];
+        Random random = new Random(125);
+        for (int run = 0; run < 1000; run++) {
+            int zoom = 1 + random.nextInt(22);
+            int tiles = 1 << zoom;
+            int x = random.nextInt(tiles);
+            int y = random.nextInt(tiles);
+            AreaTileProvider.tileBounds(x, y, zoom, tile);
+            Assert.assertTrue(tile[0] < tile[2]);
+            Assert.assertTrue(tile[1] < tile[3]);
+
+            // neighboring tiles share edges, with Y increasing southward
+            if (x < tiles - 1) {
+                AreaTileProvider.tileBounds(x + 1, y, zoom, neighbor);
+                Assert.assertEquals(tile[3], neighbor[1], 0);
+            } else {
+                Assert.assertEquals(180, tile[3], 0);
+            }
+            if (y < tiles - 1) {
+                AreaTileProvider.tileBounds(x, y + 1, zoom, neighbor);
+                Assert.assertEquals(tile[0], neighbor[2], 0);
+            }
+        }
+
+        // a grid next to the antimeridian is drawn on the world tile and on the last column of tiles
+        AreaGrid grid = new AreaGrid(new AreaDivider(40.11, 179.99, 40.1, 179.95, 100));
+        int cells = grid.getXCells() * grid.getYCells();
+        int[] range = new int[4];
+        Assert.assertEquals(cells, grid.cellsIntersecting(world[0], world[1], world[2], world[3], range));
+        for (int zoom = 1; zoom <= 12; zoom++) {
+            int tiles = 1 << zoom;
+            boolean found = false;
+            for (int y = 0; y < tiles; y++) {
+                AreaTileProvider.tileBounds(tiles - 1, y, zoom, tile);
+                Assert.assertEquals(180, tile[3], 0);
+                if (grid.cellsIntersecting(tile[0], tile[1], tile[2], tile[3], range) > 0) {
+                    found = true;
+                    Assert.assertEquals(0, range[0]);
+                    Assert.assertEquals(grid.getXCells() - 1, range[2]);
+                }
+            }
+            Assert.assertTrue(found);
+
+            // the westernmost column, just across the antimeridian from the grid, doesn't reach it
+            AreaTileProvider.tileBounds(0, tiles / 2, zoom, tile);
+            Assert.assertEquals(0, grid.cellsIntersecting(tile[0], tile[1], tile[2], tile[3], range));
+        }
+    }
+
+    @Test
+    public void testGridPaths() {
+        AreaGrid grid = new AreaGrid(new AreaDivider(40.105402, -88.257836, 40.101920, -88.267111, 70));
+        int[][] blocks = {{0, 0, grid.getXCells() - 1, grid.getYCells() - 1}, {2, 1, 5, 3}, {4, 4, 4, 4}};
+        for (int[] block : blocks) {
+            List<LatLng> horizontal = new ArrayList<>();
+            List<LatLng> vertical = new ArrayList<>();
+            grid.gridPaths(block[0], block[1], block[2], block[3], horizontal, vertical);
+            Assert.assertEquals(2 * (block[3] - block[1] + 2), horizontal.size());
+            Assert.assertEquals(2 * (block[2] - block[0] + 2), vertical.size());
+
+            // every other step is a grid line; the steps between them stay on the block's edges
+            double blockWest = grid.getCellWest(block[0]);
+            double blockEast = grid.getCellEast(block[2]);
+            double blockSouth = grid.getCellSouth(block[1]);
+            double blockNorth = grid.getCellNorth(block[3]);
+            for (int i = 0; i < horizontal.size(); i += 2) {
+                double latitude = horizontal.get(i).latitude;
+                Assert.assertEquals(latitude, horizontal.get(i + 1).latitude, 0);
+                Assert.assertEquals(grid.getCellSouth(block[1] + i / 2), latitude, 0);
+                Assert.assertEquals(blockWest + blockEast,
+                        horizontal.get(i).longitude + horizontal.get(i + 1).longitude, 1e-9);
+                if (i > 0) {
+                    Assert.assertEquals(horizontal.get(i - 1).longitude, horizontal.get(i).longitude, 0);
+                }
+            }
+            for (int i = 0; i < vertical.size(); i += 2) {
+                double longitude = vertical.get(i).longitude;
+                Assert.assertEquals(longitude, vertical.get(i + 1).longitude, 0);
+                Assert.assertEquals(grid.getCellWest(block[0] + i / 2), longitude, 0);
+                Assert.assertEquals(blockSouth + blockNorth,
+                        vertical.get(i).latitude + vertical.get(i + 1).latitude, 1e-9);
+                if (i > 0) {
+                    Assert.assertEquals(vertical.get(i - 1).latitude, vertical.get(i).latitude, 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOutlinePolygon() {
+        AreaGrid grid = new AreaGrid(new AreaDivider(40.105402, -88.257836, 40.101920, -88.267111, 70));
+        CellOwnership ownership = new CellOwnership(grid.getXCells(), grid.getYCells());
+        TerritoryMap territories = new TerritoryMap(ownership);
+        // a ring of cells around an uncaptured one
+        for (int y = 1; y <= 3; y++) {
+            for (int x = 1; x <= 3; x++) {
+                if (x != 2 || y != 2) {
+                    territories.ownerChanged(x, y, ownership.set(x, y, TeamID.TEAM_RED), new IntList(), new IntList());
+                }
+            }
+        }
+        PolygonOptions polygon = grid.outlinePolygon(territories.outline(territories.territoryOf(1, 1)));
+        Set<LatLng> outer = new HashSet<>(Arrays.asList(
+                new LatLng(grid.getCellSouth(1), grid.getCellWest(1)),
+                new LatLng(grid.getCellSouth(1), grid.getCellEast(3)),
+                new LatLng(grid.getCellNorth(3), grid.getCellEast(3)),
+                new LatLng(grid.getCellNorth(3), grid.getCellWest(1))));
+        Assert.assertEquals(4, polygon.getPoints().size());
+        Assert.assertEquals(outer, new HashSet<>(polygon.getPoints()));
+        Set<LatLng> hole = new HashSet<>(Arrays.asList(
+                new LatLng(grid.getCellSouth(2), grid.getCellWest(2)),
+                new LatLng(grid.getCellSouth(2), grid.getCellEast(2)),
+                new LatLng(grid.getCellNorth(2), grid.getCellEast(2)),
+                new LatLng(grid.getCellNorth(2), grid.getCellWest(2))));
+        Assert.assertEquals(1, polygon.getHoles().size());
+        Assert.assertEquals(4, polygon.getHoles().get(0).size());
+        Assert.assertEquals(hole, new HashSet<>(polygon.getHoles().get(0)));
+    }
+
+}
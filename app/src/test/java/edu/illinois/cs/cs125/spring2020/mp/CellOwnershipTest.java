@@ -0,0 +1,264 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.CellOwnership;
+import edu.illinois.cs.cs125.spring2020.mp.logic.IntList;
+import edu.illinois.cs.cs125.spring2020.mp.logic.OwnershipQuadtree;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TeamID;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TerritoryMap;
+
+/**
+ * Checks the stores and summaries of area mode cell owners against counting the cells directly.
+ */
+public class CellOwnershipTest {
+
+    @Test
+    public void testCellOwnership() {
+        Random random = new Random(125);
+        int xCells = 37;
+        int yCells = 23;
+        CellOwnership ownership = new CellOwnership(xCells, yCells);
+        int[] owners = new int[xCells * yCells];
+        Assert.assertEquals(owners.length, ownership.size());
+        Assert.assertEquals(owners.length, ownership.count(TeamID.OBSERVER));
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(xCells);
+            int y = random.nextInt(yCells);
+            int team = random.nextInt(TeamID.MAX_TEAM + 1);
+            Assert.assertEquals(owners[y * xCells + x], ownership.set(x, y, team));
+            owners[y * xCells + x] = team;
+            Assert.assertEquals(team, ownership.get(x, y));
+            Assert.assertEquals(team, ownership.get(y * xCells + x));
+        }
+        for (int team = TeamID.OBSERVER; team <= TeamID.MAX_TEAM; team++) {
+            int expected = 0;
+            for (int owner : owners) {
+                if (owner == team) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(expected, ownership.count(team));
+        }
+        Assert.assertEquals(0, ownership.count(TeamID.MAX_TEAM + 1));
+
+        // snapshots are copies, and restoring one brings back its owners and counts
+        byte[] snapshot = ownership.snapshot();
+        int redCells = ownership.count(TeamID.TEAM_RED);
+        ownership.clear();
+        Assert.assertEquals(owners.length, ownership.count(TeamID.OBSERVER));
+        Assert.assertEquals(TeamID.OBSERVER, ownership.get(0));
+        ownership.restore(snapshot);
+        Assert.assertEquals(redCells, ownership.count(TeamID.TEAM_RED));
+        for (int cell = 0; cell < owners.length; cell++) {
+            Assert.assertEquals(owners[cell], ownership.get(cell));
+        }
+        try {
+            ownership.restore(new byte[1]);
+            Assert.fail("Restored a snapshot of the wrong size");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            ownership.set(0, TeamID.MAX_TEAM + 1);
+            Assert.fail("Set an invalid team");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTerritoryMap() {
+        Random random = new Random(125);
+        for (int run = 0; run < 100; run++) {
+            int xCells = 1 + random.nextInt(12);
+            int yCells = 1 + random.nextInt(12);
+            CellOwnership ownership = new CellOwnership(xCells, yCells);
+            TerritoryMap territories = new TerritoryMap(ownership);
+            Set<Integer> live = new HashSet<>();
+            for (int change = 0; change < 60; change++) {
+                IntList removed = new IntList();
+                IntList added = new IntList();
+                // few teams, so territories often merge and split
+                int team = random.nextInt(3);
+                int x = random.nextInt(xCells);
+                int y = random.nextInt(yCells);
+                territories.ownerChanged(x, y, ownership.set(x, y, team), removed, added);
+                for (int i = 0; i < removed.size(); i++) {
+                    Assert.assertTrue(live.remove(removed.get(i)));
+                }
+                for (int i = 0; i < added.size(); i++) {
+                    Assert.assertTrue(live.add(added.get(i)));
+                }
+            }
+
+            // cells sharing a side are in the same territory exactly when they have the same owner
+            Set<Integer> labels = new HashSet<>();
+            for (int y = 0; y < yCells; y++) {
+                for (int x = 0; x < xCells; x++) {
+                    int territory = territories.territoryOf(x, y);
+                    if (territories.getOwner(x, y) == TeamID.OBSERVER) {
+                        Assert.assertEquals(-1, territory);
+                        continue;
+                    }
+                    labels.add(territory);
+                    Assert.assertEquals(territories.getOwner(x, y), territories.getTeam(territory));
+                    if (x + 1 < xCells) {
+                        Assert.assertEquals(territories.getOwner(x, y) == territories.getOwner(x + 1, y),
+                                territory == territories.territoryOf(x + 1, y));
+                    }
+                    if (y + 1 < yCells) {
+                        Assert.assertEquals(territories.getOwner(x, y) == territories.getOwner(x, y + 1),
+                                territory == territories.territoryOf(x, y + 1));
+                    }
+                }
+            }
+            Assert.assertEquals(labels, live);
+
+            // a map built over cells that were already captured finds the same territories
+            TerritoryMap rebuilt = new TerritoryMap(ownership);
+            Map<Integer, Integer> matching = new HashMap<>();
+            for (int y = 0; y < yCells; y++) {
+                for (int x = 0; x < xCells; x++) {
+                    int territory = territories.territoryOf(x, y);
+                    if (territory < 0) {
+                        Assert.assertEquals(-1, rebuilt.territoryOf(x, y));
+                        continue;
+                    }
+                    matching.putIfAbsent(territory, rebuilt.territoryOf(x, y));
+                    Assert.assertEquals((int) matching.get(territory), rebuilt.territoryOf(x, y));
+                    Assert.assertEquals(territories.getSize(territory), rebuilt.getSize(rebuilt.territoryOf(x, y)));
+                }
+            }
+            Assert.assertEquals(live.size(), new HashSet<>(matching.values()).size());
+
+            // each outline encloses exactly its territory's cells
+            for (int territory : live) {
+                List<int[]> rings = territories.outline(territory);
+                Assert.assertTrue(rings.get(0).length >= 8);
+                for (int r = 0; r < rings.size(); r++) {
+                    int[] ring = rings.get(r);
+                    // only the first ring (the outer edge) runs counterclockwise
+                    long area = 0;
+                    for (int i = 0; i < ring.length; i += 2) {
+                        int next = (i + 2) % ring.length;
+                        area += (long) ring[i] * ring[next + 1] - (long) ring[next] * ring[i + 1];
+                    }
+                    Assert.assertEquals(r == 0, area > 0);
+                    for (int i = 0; i < ring.length; i += 2) {
+                        int next = (i + 2) % ring.length;
+                        int after = (i + 4) % ring.length;
+                        // sides are grid lines, and every point is a turn
+                        Assert.assertTrue(ring[i] == ring[next] ^ ring[i + 1] == ring[next + 1]);
+                        Assert.assertTrue((ring[i] == ring[next]) != (ring[next] == ring[after]));
+                    }
+                }
+                int cells = 0;
+                for (int y = 0; y < yCells; y++) {
+                    for (int x = 0; x < xCells; x++) {
+                        boolean inside = false;
+                        for (int[] ring : rings) {
+                            for (int i = 0; i < ring.length; i += 2) {
+                                int next = (i + 2) % ring.length;
+                                // a ray west from the cell's center crosses vertical sides to its west
+                                if (ring[i] == ring[next] && ring[i] <= x
+                                        && Math.min(ring[i + 1], ring[next + 1]) <= y
+                                        && Math.max(ring[i + 1], ring[next + 1]) > y) {
+                                    inside = !inside;
+                                }
+                            }
+                        }
+                        Assert.assertEquals(territories.territoryOf(x, y) == territory, inside);
+                        if (inside) {
+                            cells++;
+                        }
+                    }
+                }
+                Assert.assertEquals(cells, territories.getSize(territory));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOwnershipQuadtree() {
+        Random random = new Random(125);
+        for (int run = 0; run < 50; run++) {
+            int xCells = 1 + random.nextInt(40);
+            int yCells = 1 + random.nextInt(40);
+            if (run == 0) {
+                // wide enough for levels whose counts don't fit in a char
+                xCells = 600;
+            }
+            CellOwnership cells = new CellOwnership(xCells, yCells);
+            OwnershipQuadtree tree = new OwnershipQuadtree(cells);
+            Assert.assertEquals(1, tree.getWidth(tree.getLevels() - 1));
+            Assert.assertEquals(1, tree.getHeight(tree.getLevels() - 1));
+            int[][] owners = new int[yCells][xCells];
+            for (int capture = 0; capture < 200; capture++) {
+                int x = random.nextInt(xCells);
+                int y = random.nextInt(yCells);
+                int team = random.nextInt(TeamID.MAX_TEAM + 1);
+                tree.ownerChanged(x, y, cells.set(x, y, team));
+                owners[y][x] = team;
+            }
+            OwnershipQuadtree rebuilt = new OwnershipQuadtree(cells);
+
+            // compare every node against counting its cells, both in the tree kept up to date and in one built
+            // over cells that were already captured
+            for (int level = 0; level < tree.getLevels(); level++) {
+                for (int nodeY = 0; nodeY < tree.getHeight(level); nodeY++) {
+                    for (int nodeX = 0; nodeX < tree.getWidth(level); nodeX++) {
+                        int[] counts = new int[TeamID.MAX_TEAM + 1];
+                        for (int y = nodeY << level; y < Math.min(yCells, (nodeY + 1) << level); y++) {
+                            for (int x = nodeX << level; x < Math.min(xCells, (nodeX + 1) << level); x++) {
+                                counts[owners[y][x]]++;
+                            }
+                        }
+                        Assert.assertEquals(counts[TeamID.OBSERVER],
+                                tree.getCount(level, nodeX, nodeY, TeamID.OBSERVER));
+                        int dominant = TeamID.OBSERVER;
+                        int owned = 0;
+                        for (int team = TeamID.MIN_TEAM; team <= TeamID.MAX_TEAM; team++) {
+                            Assert.assertEquals(counts[team], tree.getCount(level, nodeX, nodeY, team));
+                            Assert.assertEquals(counts[team], rebuilt.getCount(level, nodeX, nodeY, team));
+                            if (counts[team] > owned) {
+                                dominant = team;
+                                owned = counts[team];
+                            }
+                        }
+                        int total = Arrays.stream(counts).sum();
+                        boolean uniform = Arrays.stream(counts).anyMatch(count -> count == total);
+                        Assert.assertEquals(dominant, tree.getDominantTeam(level, nodeX, nodeY));
+                        Assert.assertEquals(uniform, tree.isUniform(level, nodeX, nodeY));
+                        Assert.assertEquals(dominant, rebuilt.getDominantTeam(level, nodeX, nodeY));
+                        Assert.assertEquals(uniform, rebuilt.isUniform(level, nodeX, nodeY));
+                    }
+                }
+            }
+
+            // the chosen level covers the block with few enough nodes, and the one below it doesn't
+            int minX = random.nextInt(xCells);
+            int minY = random.nextInt(yCells);
+            int maxX = minX + random.nextInt(xCells - minX);
+            int maxY = minY + random.nextInt(yCells - minY);
+            int maxNodes = 1 + random.nextInt(20);
+            int level = tree.levelFor(minX, minY, maxX, maxY, maxNodes);
+            Assert.assertTrue(((maxX >> level) - (minX >> level) + 1) * ((maxY >> level) - (minY >> level) + 1)
+                    <= maxNodes);
+            if (level > 0) {
+                Assert.assertTrue(((maxX >> (level - 1)) - (minX >> (level - 1)) + 1)
+                        * ((maxY >> (level - 1)) - (minY >> (level - 1)) + 1) > maxNodes);
+            }
+        }
+    }
+
+}
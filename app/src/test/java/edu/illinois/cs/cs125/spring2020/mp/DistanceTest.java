@@ -0,0 +1,150 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.GeoMath;
+import edu.illinois.cs.cs125.spring2020.mp.logic.LatLngUtils;
+import edu.illinois.cs.cs125.spring2020.mp.logic.LocalFrame;
+import edu.illinois.cs.cs125.spring2020.mp.logic.ProximityCheck;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetVisitChecker;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TieredDistance;
+
+/**
+ * Checks the distance helpers and proximity checks against LatLngUtils and the haversine distance.
+ */
+public class DistanceTest {
+
+    @Test
+    public void testGeoMath() {
+        Random random = new Random(125);
+        for (int run = 0; run < 200; run++) {
+            int count = random.nextInt(20);
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            for (int i = 0; i < count; i++) {
+                latitudes[i] = 40.1 + random.nextDouble() * 0.01;
+                longitudes[i] = -88.23 + random.nextDouble() * 0.01;
+            }
+            double latitude = 40.1 + random.nextDouble() * 0.01;
+            double longitude = -88.23 + random.nextDouble() * 0.01;
+            double range = random.nextDouble() * 800;
+
+            // the batch results match LatLngUtils point by point, and entries past the points are left alone
+            double[] distances = new double[count + 1];
+            double[] squared = new double[count + 1];
+            boolean[] inRange = new boolean[count + 1];
+            distances[count] = -1;
+            squared[count] = -1;
+            inRange[count] = true;
+            GeoMath.distances(latitudes, longitudes, latitude, longitude, distances);
+            GeoMath.squaredDistances(latitudes, longitudes, latitude, longitude, squared);
+            int within = GeoMath.withinRange(latitudes, longitudes, latitude, longitude, range, inRange);
+            int expectedWithin = 0;
+            for (int i = 0; i < count; i++) {
+                double distance = LatLngUtils.distance(latitudes[i], longitudes[i], latitude, longitude);
+                Assert.assertEquals(distance, distances[i], 1e-6);
+                Assert.assertEquals(distance * distance, squared[i], 1e-3);
+                Assert.assertEquals(distance <= range, inRange[i]);
+                Assert.assertEquals(distance <= range,
+                        GeoMath.withinRange(latitudes[i], longitudes[i], latitude, longitude, range));
+                if (inRange[i]) {
+                    expectedWithin++;
+                }
+            }
+            Assert.assertEquals(expectedWithin, within);
+            Assert.assertEquals(-1, distances[count], 0);
+            Assert.assertEquals(-1, squared[count], 0);
+            Assert.assertTrue(inRange[count]);
+        }
+
+        // a negative range holds nothing, not even the same point
+        Assert.assertTrue(GeoMath.withinRange(40.1, -88.2, 40.1, -88.2, 0));
+        Assert.assertFalse(GeoMath.withinRange(40.1, -88.2, 40.1, -88.2, -1));
+        boolean[] inRange = {true, true};
+        Assert.assertEquals(0, GeoMath.withinRange(new double[] {40.1, 40.1}, new double[] {-88.2, -88.2},
+                40.1, -88.2, -1, inRange));
+        Assert.assertFalse(inRange[0] || inRange[1]);
+        Assert.assertFalse(TargetVisitChecker.isTargetWithinRange(new double[] {40.1}, new double[] {-88.2}, 0,
+                40.1, -88.2, -1));
+    }
+
+    @Test
+    public void testProximityCheck() {
+        for (JsonObject test : JsonResourceLoader.loadArray("targetrange")) {
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            double latitude = test.get("lat").getAsDouble();
+            double longitude = test.get("lng").getAsDouble();
+            LocalFrame frame = LocalFrame.forPoints(latitudes, longitudes);
+            ProximityCheck proximity = new ProximityCheck(frame, test.get("prox").getAsInt());
+            Assert.assertEquals(test.get("answer").getAsInt(), TargetVisitChecker.getVisitCandidate(proximity,
+                    latitudes, longitudes, path, latitude, longitude));
+
+            // The box reject must never change the answer, even right at the threshold
+            double y = frame.toY(latitude);
+            double x = frame.toX(longitude);
+            for (int i = 0; i < latitudes.length; i++) {
+                double distance = frame.distance(latitudes[i], longitudes[i], latitude, longitude);
+                ProximityCheck exact = new ProximityCheck(frame, distance);
+                Assert.assertEquals(frame.withinRange(latitudes[i], longitudes[i], latitude, longitude, distance),
+                        exact.inRange(latitudes[i], longitudes[i], latitude, longitude));
+                Assert.assertEquals(frame.withinRange(latitudes[i], longitudes[i], latitude, longitude,
+                        proximity.getThreshold()), proximity.inRange(latitudes[i], longitudes[i], latitude, longitude));
+                double targetY = frame.toY(latitudes[i]);
+                double targetX = frame.toX(longitudes[i]);
+                Assert.assertEquals(LocalFrame.planarDistanceSquared(targetY, targetX, y, x)
+                        <= proximity.getThreshold() * proximity.getThreshold(),
+                        proximity.inRangeProjected(targetY, targetX, y, x));
+            }
+        }
+
+        // a negative range holds nothing, as with GeoMath
+        LocalFrame frame = LocalFrame.forPoints(new double[] {40.1}, new double[] {-88.2});
+        Assert.assertTrue(frame.withinRange(40.1, -88.2, 40.1, -88.2, 0));
+        Assert.assertFalse(frame.withinRange(40.1, -88.2, 40.1, -88.2, -1));
+        Assert.assertFalse(frame.withinRange(40.1, -88.2, 40.2, -88.2, -20000));
+        Assert.assertFalse(new ProximityCheck(frame, -20000).inRange(40.1, -88.2, 40.2, -88.2));
+    }
+
+    @Test
+    public void testTieredDistance() {
+        // one degree of latitude or of longitude at the equator
+        Assert.assertEquals(111195, GeoMath.haversineDistance(0, 0, 1, 0), 1);
+        Assert.assertEquals(111195, GeoMath.haversineDistance(0, 0, 0, 1), 1);
+        Assert.assertEquals(0, GeoMath.haversineDistance(40.1, -88.2, 40.1, -88.2), 0);
+
+        Random random = new Random(125);
+        int exact = 0;
+        for (int run = 0; run < 100000; run++) {
+            double threshold = 5 + random.nextDouble() * 500;
+            TieredDistance distance = new TieredDistance(threshold);
+            double lat = random.nextDouble() * 160 - 80;
+            double lng = random.nextDouble() * 360 - 180;
+            // put the other point near the threshold's edge in a random direction
+            double range = threshold * (0.99 + random.nextDouble() * 0.02) / 111195;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double otherLat = lat + range * Math.sin(angle);
+            double otherLng = lng + range * Math.cos(angle) / Math.cos(Math.toRadians(lat));
+            double truth = GeoMath.haversineDistance(lat, lng, otherLat, otherLng);
+            Assert.assertEquals(truth <= threshold, distance.inRange(lat, lng, otherLat, otherLng));
+            if (Math.abs(truth - threshold) < threshold * TieredDistance.DEFAULT_BAND) {
+                exact++;
+            }
+        }
+        Assert.assertTrue(exact > 0);
+        Assert.assertTrue(new TieredDistance(20).inRange(40.1, -88.2, 40.1001, -88.2001));
+        Assert.assertFalse(new TieredDistance(20).inRange(40.1, -88.2, 40.2, -88.2));
+
+        // points on either side of the antimeridian are about 22 meters apart, not most of the way around
+        Assert.assertTrue(new TieredDistance(30).inRange(0, 179.9999, 0, -179.9999));
+        Assert.assertTrue(new TieredDistance(30).inRange(0, -179.9999, 0, 179.9999));
+        Assert.assertFalse(new TieredDistance(20).inRange(0, 179.9999, 0, -179.9999));
+    }
+
+}
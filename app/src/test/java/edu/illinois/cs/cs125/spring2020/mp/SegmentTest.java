@@ -0,0 +1,240 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.CrossingMemo;
+import edu.illinois.cs.cs125.spring2020.mp.logic.LocalFrame;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentGrid;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentMath;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentSet;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentSweep;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetVisitChecker;
+
+/**
+ * Checks the line crossing kernel and the segment structures built on it (sweep, grid, set, and crossing memo)
+ * against the target mode fixtures and against checking every pair of lines.
+ */
+public class SegmentTest {
+
+    /** Point tolerance for crossing checks in made-up projected coordinates (about LatLngUtils' in meters). */
+    private static final double POINT_TOLERANCE = 0.01;
+
+    private static double[][] loadLines(JsonObject test) {
+        return new double[][] {
+            {test.get("sla1").getAsDouble(), test.get("ela1").getAsDouble(),
+                test.get("sla2").getAsDouble(), test.get("ela2").getAsDouble()},
+            {test.get("sln1").getAsDouble(), test.get("eln1").getAsDouble(),
+                test.get("sln2").getAsDouble(), test.get("eln2").getAsDouble()}
+        };
+    }
+
+    @Test
+    public void testPrimitiveLinesCross() {
+        for (JsonObject test : JsonResourceLoader.loadArray("linescross")) {
+            double[][] lines = loadLines(test);
+            double[] ys = lines[0];
+            double[] xs = lines[1];
+            boolean answer = test.get("answer").getAsBoolean();
+            Assert.assertEquals(answer, SegmentMath.linesCross(ys, xs, 0, 1, 2, 3));
+            Assert.assertEquals(answer, SegmentMath.linesCross(ys, xs, 2, 3, 0, 1));
+            Assert.assertEquals(answer, SegmentMath.linesCross(ys, xs, 1, 0, 3, 2));
+
+            double[] segments = {ys[0], xs[0], ys[1], xs[1], ys[2], xs[2], ys[3], xs[3]};
+            Assert.assertEquals(answer, SegmentMath.segmentsCross(segments, 0, 1));
+            Assert.assertEquals(answer, SegmentMath.segmentCrosses(segments, 1, ys[0], xs[0], ys[1], xs[1]));
+
+            LocalFrame frame = LocalFrame.forPoints(ys, xs);
+            double[] projectedYs = new double[ys.length];
+            double[] projectedXs = new double[xs.length];
+            frame.project(ys, xs, projectedYs, projectedXs);
+            Assert.assertEquals("Projection should not change whether lines cross",
+                    answer, SegmentMath.linesCross(projectedYs, projectedXs, 0, 1, 2, 3, frame.getPointTolerance()));
+        }
+    }
+
+    @Test
+    public void testTouchingLines() {
+        double[] ys = {40.10, 40.12, 40.11, 40.13, 40.10, 40.14};
+        double[] xs = {-88.20, -88.20, -88.20, -88.22, -88.24, -88.20};
+        Assert.assertFalse("Lines sharing an endpoint only touch",
+                SegmentMath.linesCross(ys, xs, 0, 1, 1, 3));
+        Assert.assertTrue("An endpoint on the middle of another line crosses it",
+                SegmentMath.linesCross(ys, xs, 0, 1, 2, 3));
+        Assert.assertFalse("Overlapping collinear lines are parallel, not crossing",
+                SegmentMath.linesCross(ys, xs, 0, 1, 2, 5));
+        Assert.assertFalse("Separate lines don't cross",
+                SegmentMath.linesCross(ys, xs, 0, 1, 3, 4));
+
+        // the second line starts a few millimeters from the end of the first, which is the same point in degrees
+        double[] latitudes = {40.10, 40.12, 40.12 - 0.00000005, 40.13};
+        double[] longitudes = {-88.20, -88.20, -88.20 + 0.00000005, -88.22};
+        Assert.assertFalse(SegmentMath.linesCross(latitudes, longitudes, 0, 1, 2, 3));
+        LocalFrame frame = LocalFrame.forPoints(latitudes, longitudes);
+        double[] projectedYs = new double[latitudes.length];
+        double[] projectedXs = new double[longitudes.length];
+        frame.project(latitudes, longitudes, projectedYs, projectedXs);
+        Assert.assertFalse("Points that are the same in degrees should be the same in meters",
+                SegmentMath.linesCross(projectedYs, projectedXs, 0, 1, 2, 3, frame.getPointTolerance()));
+    }
+
+    @Test
+    public void testSegmentSweep() {
+        for (JsonObject test : JsonResourceLoader.loadArray("linescross")) {
+            double[][] lines = loadLines(test);
+            double[] segments = {lines[0][0], lines[1][0], lines[0][1], lines[1][1],
+                lines[0][2], lines[1][2], lines[0][3], lines[1][3]};
+            boolean answer = test.get("answer").getAsBoolean();
+            Assert.assertEquals(answer, SegmentSweep.anyCross(segments, 2));
+            Assert.assertEquals(answer ? 1 : 0, SegmentSweep.crossingPairs(segments, 2).size());
+        }
+
+        // Small integer grids produce plenty of shared endpoints, vertical lines, T-touches, and overlaps
+        Random random = new Random(125);
+        for (int run = 0; run < 5000; run++) {
+            int count = 1 + random.nextInt(12);
+            int gridSize = 2 + random.nextInt(5);
+            double[] segments = new double[count * SegmentMath.SEGMENT_STRIDE];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = random.nextInt(gridSize);
+            }
+            int crossings = 0;
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    if (SegmentMath.segmentsCross(segments, i, j)) {
+                        crossings++;
+                    }
+                }
+            }
+            Assert.assertEquals(crossings > 0, SegmentSweep.anyCross(segments, count));
+            Assert.assertEquals(crossings, SegmentSweep.crossingPairs(segments, count).size());
+        }
+    }
+
+    @Test
+    public void testSegmentGrid() {
+        Random random = new Random(125);
+        for (int run = 0; run < 500; run++) {
+            double size = 100 + random.nextInt(900);
+            SegmentGrid grid = new SegmentGrid(size, size, 1 + random.nextInt(100), POINT_TOLERANCE);
+            int count = random.nextInt(40);
+            // Some segments stick out past the edge of the grid
+            double[] segments = new double[count * SegmentMath.SEGMENT_STRIDE];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = random.nextInt(12) * size / 10;
+            }
+            for (int i = 0; i < count; i++) {
+                int offset = i * SegmentMath.SEGMENT_STRIDE;
+                Assert.assertEquals(i, grid.add(segments[offset], segments[offset + 1],
+                        segments[offset + 2], segments[offset + 3]));
+            }
+            Assert.assertEquals(count, grid.size());
+            for (int query = 0; query < 10; query++) {
+                double[] line = new double[SegmentMath.SEGMENT_STRIDE];
+                for (int i = 0; i < line.length; i++) {
+                    line[i] = random.nextDouble() * size;
+                }
+                boolean crosses = false;
+                for (int i = 0; i < count; i++) {
+                    crosses = crosses
+                            || SegmentMath.segmentCrosses(segments, i, line[0], line[1], line[2], line[3],
+                            POINT_TOLERANCE);
+                }
+                Assert.assertEquals(crosses, grid.anyCrosses(line[0], line[1], line[2], line[3]));
+            }
+        }
+    }
+
+    @Test
+    public void testSegmentSet() {
+        for (JsonObject test : JsonResourceLoader.loadArray("snakerule")) {
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            int tryVisit = test.get("try").getAsInt();
+            SegmentSet lines = new SegmentSet();
+            int last = path[0];
+            for (int i = 1; i < path.length && path[i] >= 0; i++) {
+                lines.add(latitudes[last], longitudes[last], latitudes[path[i]], longitudes[path[i]]);
+                last = path[i];
+            }
+            if (last >= 0) {
+                Assert.assertEquals(test.get("answer").getAsBoolean(), TargetVisitChecker.checkSnakeRule(lines,
+                        latitudes[last], longitudes[last], latitudes[tryVisit], longitudes[tryVisit]));
+            }
+        }
+
+        Random random = new Random(125);
+        for (int run = 0; run < 2000; run++) {
+            int count = random.nextInt(30);
+            SegmentSet set = new SegmentSet();
+            double[] segments = new double[count * SegmentMath.SEGMENT_STRIDE];
+            int[] everyOther = new int[count];
+            int listed = 0;
+            for (int i = 0; i < count; i++) {
+                double startY = 40.1 + random.nextInt(5) * 0.005;
+                double startX = -88.23 + random.nextDouble() * 0.02;
+                double endY = 40.1 + random.nextDouble() * 0.02;
+                double endX = -88.23 + random.nextInt(5) * 0.005;
+                Assert.assertEquals(i, set.add(startY, startX, endY, endX));
+                SegmentMath.setSegment(segments, i, startY, startX, endY, endX);
+                if (i % 2 == 0) {
+                    everyOther[listed] = i;
+                    listed++;
+                }
+            }
+            Assert.assertArrayEquals(segments, set.toSegmentArray(), 0);
+            double startY = 40.1 + random.nextDouble() * 0.02;
+            double startX = -88.23 + random.nextInt(5) * 0.005;
+            double endY = 40.1 + random.nextInt(5) * 0.005;
+            double endX = -88.23 + random.nextDouble() * 0.02;
+            int first = -1;
+            int firstListed = -1;
+            for (int i = count - 1; i >= 0; i--) {
+                if (SegmentMath.segmentCrosses(segments, i, startY, startX, endY, endX)) {
+                    first = i;
+                    if (i % 2 == 0) {
+                        firstListed = i;
+                    }
+                }
+            }
+            Assert.assertEquals(first, SegmentMath.firstCrossing(set, startY, startX, endY, endX));
+            Assert.assertEquals(firstListed,
+                    SegmentMath.firstCrossing(set, everyOther, listed, startY, startX, endY, endX));
+        }
+    }
+
+    @Test
+    public void testCrossingMemo() {
+        Random random = new Random(125);
+        // a small game gets a dense table, a large one a bounded cache
+        for (int targets : new int[] {30, 500}) {
+            double[] ys = new double[targets];
+            double[] xs = new double[targets];
+            for (int i = 0; i < targets; i++) {
+                ys[i] = random.nextDouble() * 1000;
+                xs[i] = random.nextDouble() * 1000;
+            }
+            CrossingMemo memo = new CrossingMemo(ys, xs, POINT_TOLERANCE);
+            Assert.assertEquals(targets < 50, memo.isDense());
+            if (memo.isDense()) {
+                memo.warm();
+            }
+            for (int run = 0; run < 200000; run++) {
+                int a = random.nextInt(targets);
+                int b = random.nextInt(targets);
+                int c = random.nextInt(targets);
+                int d = random.nextInt(targets);
+                boolean expected = SegmentMath.linesCross(ys, xs, a, b, c, d, POINT_TOLERANCE);
+                Assert.assertEquals(expected, memo.linesCross(a, b, c, d));
+                // the same pair of lines, asked in another order, is remembered under the same key
+                Assert.assertEquals(expected, memo.linesCross(d, c, b, a));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.BatchVisitChecker;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetKdTree;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetVisitChecker;
+
+/**
+ * Compares the speed of the spatial indexes with a plain scan, on the workloads SpatialIndexTest checks.
+ * Timings are printed rather than asserted, since they depend on the machine, so this only runs when asked for:
+ * remove the Ignore annotation locally, or run the class directly from the IDE.
+ */
+@Ignore("Benchmark: run by hand")
+public class SpatialIndexBenchmark {
+
+    private static final int BENCHMARK_ROUNDS = 2000;
+
+    /** Number of passes over each workload: the first warms up the JIT and is not counted. */
+    private static final int PASSES = 2;
+
+    private static void report(String workload, String index, long nanos, int queries) {
+        System.out.println(String.format("%s %s: %.1f ns/query", workload, index, (double) nanos / queries));
+    }
+
+    @Test
+    public void benchmarkTargetRange() {
+        SpatialIndexTest.TargetRangeCase[] cases = SpatialIndexTest.loadTargetRange();
+        long scanTime = 0;
+        long treeTime = 0;
+        int checksum = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                for (SpatialIndexTest.TargetRangeCase c : cases) {
+                    checksum += SpatialIndexTest.scanCandidate(c);
+                }
+            }
+            long middle = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                for (SpatialIndexTest.TargetRangeCase c : cases) {
+                    checksum -= SpatialIndexTest.treeCandidate(c);
+                }
+            }
+            scanTime = middle - start;
+            treeTime = System.nanoTime() - middle;
+        }
+        System.out.println("targetrange checksum (should be 0): " + checksum);
+        report("targetrange", "scan", scanTime, BENCHMARK_ROUNDS * cases.length);
+        report("targetrange", "R-tree", treeTime, BENCHMARK_ROUNDS * cases.length);
+    }
+
+    @Test
+    public void benchmarkSnakeRule() {
+        SpatialIndexTest.SnakeRuleCase[] cases = SpatialIndexTest.loadSnakeRule();
+        long scanTime = 0;
+        long treeTime = 0;
+        long gridTime = 0;
+        int crossings = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                for (SpatialIndexTest.SnakeRuleCase c : cases) {
+                    if (SpatialIndexTest.scanCrosses(c)) {
+                        crossings++;
+                    }
+                }
+            }
+            long treeStart = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                for (SpatialIndexTest.SnakeRuleCase c : cases) {
+                    if (SpatialIndexTest.treeCrosses(c)) {
+                        crossings++;
+                    }
+                }
+            }
+            long gridStart = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                for (SpatialIndexTest.SnakeRuleCase c : cases) {
+                    if (SpatialIndexTest.gridCrosses(c)) {
+                        crossings++;
+                    }
+                }
+            }
+            scanTime = treeStart - start;
+            treeTime = gridStart - treeStart;
+            gridTime = System.nanoTime() - gridStart;
+        }
+        System.out.println("snakerule crossings found: " + crossings);
+        report("snakerule", "scan", scanTime, BENCHMARK_ROUNDS * cases.length);
+        report("snakerule", "R-tree", treeTime, BENCHMARK_ROUNDS * cases.length);
+        report("snakerule", "grid", gridTime, BENCHMARK_ROUNDS * cases.length);
+    }
+
+    @Test
+    public void benchmarkClusteredTargets() {
+        SpatialIndexTest.ClusteredGame game = new SpatialIndexTest.ClusteredGame();
+        final int queries = SpatialIndexTest.ClusteredGame.QUERIES;
+        long scanTime = 0;
+        long treeTime = 0;
+        long segmentScanTime = 0;
+        long segmentTreeTime = 0;
+        long segmentGridTime = 0;
+        int found = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                found += game.scanNear(q);
+            }
+            long treeStart = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                found += game.pointTree.searchNear(game.queryYs[q], game.queryXs[q],
+                        SpatialIndexTest.ClusteredGame.RANGE, game.buffer);
+            }
+            long segmentStart = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                if (game.scanCrosses(q)) {
+                    found++;
+                }
+            }
+            long segmentTreeStart = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                if (game.segmentTree.firstCrossing(game.segments, game.queryYs[q], game.queryXs[q],
+                        game.lineYs[q], game.lineXs[q]) >= 0) {
+                    found++;
+                }
+            }
+            long segmentGridStart = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                if (game.grid.anyCrosses(game.queryYs[q], game.queryXs[q], game.lineYs[q], game.lineXs[q])) {
+                    found++;
+                }
+            }
+            long end = System.nanoTime();
+            scanTime = treeStart - start;
+            treeTime = segmentStart - treeStart;
+            segmentScanTime = segmentTreeStart - segmentStart;
+            segmentTreeTime = segmentGridStart - segmentTreeStart;
+            segmentGridTime = end - segmentGridStart;
+        }
+        System.out.println("clustered results found: " + found);
+        report("clustered targets", "scan", scanTime, queries);
+        report("clustered targets", "R-tree", treeTime, queries);
+        report("clustered segments", "scan", segmentScanTime, queries);
+        report("clustered segments", "R-tree", segmentTreeTime, queries);
+        report("clustered segments", "grid", segmentGridTime, queries);
+    }
+
+    @Test
+    public void benchmarkVisitCandidate() {
+        SpatialIndexTest.DegreeGame game = new SpatialIndexTest.DegreeGame();
+        final int queries = SpatialIndexTest.DegreeGame.QUERIES;
+        TargetKdTree tree = new TargetKdTree(game.latitudes, game.longitudes);
+        long scanTime = 0;
+        long treeTime = 0;
+        int checksum = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                checksum += game.scanCandidate(q);
+            }
+            long middle = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                checksum -= TargetVisitChecker.getVisitCandidate(tree, game.path,
+                        game.queryLatitudes[q], game.queryLongitudes[q], SpatialIndexTest.DegreeGame.RANGE);
+            }
+            scanTime = middle - start;
+            treeTime = System.nanoTime() - middle;
+        }
+        System.out.println("visit candidate checksum (should be 0): " + checksum);
+        report("visit candidate", "scan", scanTime, queries);
+        report("visit candidate", "KD-tree", treeTime, queries);
+    }
+
+    @Test
+    public void benchmarkBatchVisitChecker() {
+        SpatialIndexTest.RecordedGame game = new SpatialIndexTest.RecordedGame();
+        final int queries = SpatialIndexTest.RecordedGame.QUERIES;
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        BatchVisitChecker sequential = new BatchVisitChecker(game.latitudes, game.longitudes,
+                SpatialIndexTest.RecordedGame.RANGE, singleThread);
+        BatchVisitChecker parallel = new BatchVisitChecker(game.latitudes, game.longitudes,
+                SpatialIndexTest.RecordedGame.RANGE);
+        int[] candidates = new int[queries];
+        boolean[] claimable = new boolean[queries];
+        long sequentialTime = 0;
+        long parallelTime = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            sequential.evaluate(game.paths, game.players, game.queryLatitudes, game.queryLongitudes,
+                    candidates, claimable);
+            long middle = System.nanoTime();
+            parallel.evaluate(game.paths, game.players, game.queryLatitudes, game.queryLongitudes,
+                    candidates, claimable);
+            sequentialTime = middle - start;
+            parallelTime = System.nanoTime() - middle;
+        }
+        singleThread.shutdown();
+        report("batch visit", "1 thread", sequentialTime, queries);
+        report("batch visit", ForkJoinPool.getCommonPoolParallelism() + " threads", parallelTime, queries);
+    }
+
+}
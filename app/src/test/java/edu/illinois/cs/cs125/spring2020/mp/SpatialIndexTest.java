@@ -0,0 +1,422 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.BatchVisitChecker;
+import edu.illinois.cs.cs125.spring2020.mp.logic.LocalFrame;
+import edu.illinois.cs.cs125.spring2020.mp.logic.PackedRTree;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentGrid;
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentMath;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetKdTree;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetVisitChecker;
+
+/**
+ * Checks the spatial indexes against the target mode fixtures and against a plain scan of generated games.
+ * The workloads here are shared with SpatialIndexBenchmark, which times the same queries.
+ */
+public class SpatialIndexTest {
+
+    static class TargetRangeCase {
+        double[] ys;
+        double[] xs;
+        boolean[] visited;
+        double y;
+        double x;
+        int range;
+        int answer;
+        PackedRTree tree;
+        int[] buffer;
+    }
+
+    static class SnakeRuleCase {
+        double[] segments;
+        int count;
+        double[] line;
+        boolean answer;
+        PackedRTree tree;
+        SegmentGrid grid;
+        int[] buffer;
+        double pointTolerance;
+    }
+
+    /** A large game in meters: most targets in a few dense clusters, the rest spread over a 20 km square. */
+    static class ClusteredGame {
+        static final int TARGETS = 5000;
+        static final int QUERIES = 2000;
+        static final int RANGE = 50;
+        static final double POINT_TOLERANCE = 0.01;
+        final double[] ys = new double[TARGETS];
+        final double[] xs = new double[TARGETS];
+        final double[] queryYs = new double[QUERIES];
+        final double[] queryXs = new double[QUERIES];
+        final double[] lineYs = new double[QUERIES];
+        final double[] lineXs = new double[QUERIES];
+        final double[] segments = new double[TARGETS * SegmentMath.SEGMENT_STRIDE];
+        final PackedRTree pointTree;
+        final PackedRTree segmentTree;
+        final SegmentGrid grid;
+        final int[] buffer = new int[TARGETS];
+
+        ClusteredGame() {
+            Random random = new Random(125);
+            double[] clusterYs = {3000, 9000, 15000};
+            double[] clusterXs = {4000, 12000, 6000};
+            for (int i = 0; i < TARGETS; i++) {
+                if (random.nextInt(5) == 0) {
+                    ys[i] = random.nextDouble() * 20000;
+                    xs[i] = random.nextDouble() * 20000;
+                } else {
+                    int cluster = random.nextInt(clusterYs.length);
+                    ys[i] = clusterYs[cluster] + random.nextGaussian() * 300;
+                    xs[i] = clusterXs[cluster] + random.nextGaussian() * 300;
+                }
+            }
+            for (int q = 0; q < QUERIES; q++) {
+                int near = random.nextInt(TARGETS);
+                queryYs[q] = ys[near] + random.nextGaussian() * RANGE;
+                queryXs[q] = xs[near] + random.nextGaussian() * RANGE;
+                // Proposed path segments run to another target a few hundred meters away
+                lineYs[q] = queryYs[q] + random.nextGaussian() * RANGE * 5;
+                lineXs[q] = queryXs[q] + random.nextGaussian() * RANGE * 5;
+            }
+            // Paths are short hops between targets, as players walk from one to the next
+            for (int i = 0; i < TARGETS; i++) {
+                int end = random.nextInt(TARGETS);
+                SegmentMath.setSegment(segments, i, ys[i], xs[i], ys[i] + (ys[end] - ys[i]) / 50,
+                        xs[i] + (xs[end] - xs[i]) / 50);
+            }
+            pointTree = PackedRTree.forPoints(ys, xs);
+            segmentTree = PackedRTree.forSegments(segments, TARGETS);
+            grid = new SegmentGrid(20000, 20000, 20000 / Math.sqrt(TARGETS), POINT_TOLERANCE);
+            for (int i = 0; i < TARGETS; i++) {
+                int offset = i * SegmentMath.SEGMENT_STRIDE;
+                grid.add(segments[offset], segments[offset + 1], segments[offset + 2], segments[offset + 3]);
+            }
+        }
+
+        int scanNear(int q) {
+            int found = 0;
+            for (int i = 0; i < TARGETS; i++) {
+                if (LocalFrame.planarDistanceSquared(ys[i], xs[i], queryYs[q], queryXs[q]) <= RANGE * RANGE) {
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        boolean scanCrosses(int q) {
+            for (int i = 0; i < TARGETS; i++) {
+                if (SegmentMath.segmentCrosses(segments, i, queryYs[q], queryXs[q], lineYs[q], lineXs[q],
+                        POINT_TOLERANCE)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** A large game in degrees, with a tenth of the targets already visited. */
+    static class DegreeGame {
+        static final int TARGETS = 5000;
+        static final int QUERIES = 2000;
+        static final int RANGE = 50;
+        final double[] latitudes = new double[TARGETS];
+        final double[] longitudes = new double[TARGETS];
+        final int[] path = new int[TARGETS];
+        final double[] queryLatitudes = new double[QUERIES];
+        final double[] queryLongitudes = new double[QUERIES];
+
+        DegreeGame() {
+            Random random = new Random(125);
+            for (int i = 0; i < TARGETS; i++) {
+                latitudes[i] = 40.0 + random.nextDouble() * 0.2;
+                longitudes[i] = -88.3 + random.nextDouble() * 0.2;
+            }
+            Arrays.fill(path, -1);
+            for (int i = 0; i < TARGETS / 10; i++) {
+                path[i] = i * 10;
+            }
+            for (int q = 0; q < QUERIES; q++) {
+                int near = random.nextInt(TARGETS);
+                queryLatitudes[q] = latitudes[near] + random.nextGaussian() * 0.0003;
+                queryLongitudes[q] = longitudes[near] + random.nextGaussian() * 0.0003;
+            }
+        }
+
+        int scanCandidate(int q) {
+            for (int i = 0; i < TARGETS; i++) {
+                if (TargetVisitChecker.isTargetWithinRange(latitudes, longitudes, i,
+                        queryLatitudes[q], queryLongitudes[q], RANGE)
+                        && !TargetVisitChecker.isTargetVisited(path, i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** A recorded game to re-score: many players with partial paths, each reporting many locations. */
+    static class RecordedGame {
+        static final int TARGETS = 2000;
+        static final int PLAYERS = 50;
+        static final int QUERIES = 20000;
+        static final int RANGE = 60;
+        final double[] latitudes = new double[TARGETS];
+        final double[] longitudes = new double[TARGETS];
+        final int[][] paths = new int[PLAYERS][TARGETS];
+        final int[] players = new int[QUERIES];
+        final double[] queryLatitudes = new double[QUERIES];
+        final double[] queryLongitudes = new double[QUERIES];
+
+        RecordedGame() {
+            Random random = new Random(125);
+            for (int i = 0; i < TARGETS; i++) {
+                latitudes[i] = 40.0 + random.nextDouble() * 0.1;
+                longitudes[i] = -88.3 + random.nextDouble() * 0.1;
+            }
+            for (int p = 0; p < PLAYERS; p++) {
+                Arrays.fill(paths[p], -1);
+                // each player walks a short chain of nearby targets, as a real path would
+                int target = random.nextInt(TARGETS);
+                int length = random.nextInt(20);
+                for (int i = 0; i < length; i++) {
+                    if (!TargetVisitChecker.isTargetVisited(paths[p], target)) {
+                        TargetVisitChecker.visitTarget(paths[p], target);
+                    }
+                    target = (target + 1 + random.nextInt(5)) % TARGETS;
+                }
+            }
+            for (int q = 0; q < QUERIES; q++) {
+                players[q] = random.nextInt(PLAYERS);
+                int near = random.nextInt(TARGETS);
+                queryLatitudes[q] = latitudes[near] + random.nextGaussian() * 0.0004;
+                queryLongitudes[q] = longitudes[near] + random.nextGaussian() * 0.0004;
+            }
+        }
+    }
+
+    static TargetRangeCase[] loadTargetRange() {
+        JsonObject[] tests = JsonResourceLoader.loadArray("targetrange");
+        TargetRangeCase[] cases = new TargetRangeCase[tests.length];
+        for (int t = 0; t < tests.length; t++) {
+            JsonObject test = tests[t];
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            LocalFrame frame = LocalFrame.forPoints(latitudes, longitudes);
+            TargetRangeCase c = new TargetRangeCase();
+            c.ys = new double[latitudes.length];
+            c.xs = new double[longitudes.length];
+            frame.project(latitudes, longitudes, c.ys, c.xs);
+            c.visited = new boolean[latitudes.length];
+            for (int visit : path) {
+                if (visit >= 0) {
+                    c.visited[visit] = true;
+                }
+            }
+            c.y = frame.toY(test.get("lat").getAsDouble());
+            c.x = frame.toX(test.get("lng").getAsDouble());
+            c.range = test.get("prox").getAsInt();
+            c.answer = test.get("answer").getAsInt();
+            c.tree = PackedRTree.forPoints(c.ys, c.xs);
+            c.buffer = new int[latitudes.length];
+            cases[t] = c;
+        }
+        return cases;
+    }
+
+    static SnakeRuleCase[] loadSnakeRule() {
+        JsonObject[] tests = JsonResourceLoader.loadArray("snakerule");
+        SnakeRuleCase[] cases = new SnakeRuleCase[tests.length];
+        for (int t = 0; t < tests.length; t++) {
+            JsonObject test = tests[t];
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            int tryVisit = test.get("try").getAsInt();
+            LocalFrame frame = LocalFrame.forPoints(latitudes, longitudes);
+            double[] ys = new double[latitudes.length];
+            double[] xs = new double[longitudes.length];
+            frame.project(latitudes, longitudes, ys, xs);
+
+            SnakeRuleCase c = new SnakeRuleCase();
+            int visits = 0;
+            while (visits < path.length && path[visits] >= 0) {
+                visits++;
+            }
+            c.count = Math.max(0, visits - 1);
+            c.segments = new double[c.count * SegmentMath.SEGMENT_STRIDE];
+            c.pointTolerance = frame.getPointTolerance();
+            c.grid = SegmentGrid.forPoints(ys, xs, c.pointTolerance);
+            for (int i = 0; i < c.count; i++) {
+                int start = path[i];
+                int end = path[i + 1];
+                SegmentMath.setSegment(c.segments, i, ys[start], xs[start], ys[end], xs[end]);
+                c.grid.add(ys[start], xs[start], ys[end], xs[end]);
+            }
+            c.line = new double[] {0, 0, ys[tryVisit], xs[tryVisit]};
+            if (visits > 0) {
+                c.line[0] = ys[path[visits - 1]];
+                c.line[1] = xs[path[visits - 1]];
+            }
+            c.answer = test.get("answer").getAsBoolean();
+            c.tree = PackedRTree.forSegments(c.segments, c.count);
+            c.buffer = new int[Math.max(1, c.count)];
+            cases[t] = c;
+        }
+        return cases;
+    }
+
+    static int scanCandidate(TargetRangeCase c) {
+        double rangeSquared = (double) c.range * c.range;
+        for (int i = 0; i < c.ys.length; i++) {
+            if (!c.visited[i] && LocalFrame.planarDistanceSquared(c.ys[i], c.xs[i], c.y, c.x) <= rangeSquared) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int treeCandidate(TargetRangeCase c) {
+        int found = c.tree.searchNear(c.y, c.x, c.range, c.buffer);
+        int candidate = -1;
+        for (int i = 0; i < found; i++) {
+            int target = c.buffer[i];
+            if (!c.visited[target] && (candidate < 0 || target < candidate)) {
+                candidate = target;
+            }
+        }
+        return candidate;
+    }
+
+    static boolean scanCrosses(SnakeRuleCase c) {
+        for (int i = 0; i < c.count; i++) {
+            if (SegmentMath.segmentCrosses(c.segments, i, c.line[0], c.line[1], c.line[2], c.line[3],
+                    c.pointTolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean treeCrosses(SnakeRuleCase c) {
+        return c.tree.firstCrossing(c.segments, c.line[0], c.line[1], c.line[2], c.line[3], c.pointTolerance) >= 0;
+    }
+
+    static boolean treeCandidatesCross(SnakeRuleCase c) {
+        int found = c.tree.searchLine(c.line[0], c.line[1], c.line[2], c.line[3], c.buffer);
+        for (int i = 0; i < found; i++) {
+            int segment = c.buffer[i];
+            if (SegmentMath.segmentCrosses(c.segments, segment, c.line[0], c.line[1], c.line[2], c.line[3],
+                    c.pointTolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean gridCrosses(SnakeRuleCase c) {
+        return c.grid.anyCrosses(c.line[0], c.line[1], c.line[2], c.line[3]);
+    }
+
+    @Test
+    public void testTargetRange() {
+        for (TargetRangeCase c : loadTargetRange()) {
+            Assert.assertEquals(c.answer, scanCandidate(c));
+            Assert.assertEquals(c.answer, treeCandidate(c));
+        }
+    }
+
+    @Test
+    public void testSnakeRule() {
+        for (SnakeRuleCase c : loadSnakeRule()) {
+            Assert.assertEquals(c.answer, !scanCrosses(c));
+            Assert.assertEquals(c.answer, !treeCrosses(c));
+            Assert.assertEquals(c.answer, !treeCandidatesCross(c));
+            Assert.assertEquals(c.answer, !gridCrosses(c));
+        }
+    }
+
+    @Test
+    public void testClusteredTargets() {
+        ClusteredGame game = new ClusteredGame();
+        for (int q = 0; q < ClusteredGame.QUERIES; q++) {
+            Assert.assertEquals(game.scanNear(q), game.pointTree.searchNear(game.queryYs[q], game.queryXs[q],
+                    ClusteredGame.RANGE, game.buffer));
+            boolean crosses = game.scanCrosses(q);
+            Assert.assertEquals(crosses, game.segmentTree.firstCrossing(game.segments,
+                    game.queryYs[q], game.queryXs[q], game.lineYs[q], game.lineXs[q],
+                    ClusteredGame.POINT_TOLERANCE) >= 0);
+            Assert.assertEquals(crosses, game.grid.anyCrosses(game.queryYs[q], game.queryXs[q],
+                    game.lineYs[q], game.lineXs[q]));
+        }
+    }
+
+    @Test
+    public void testKdTree() {
+        for (JsonObject test : JsonResourceLoader.loadArray("targetrange")) {
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            TargetKdTree tree = new TargetKdTree(latitudes, longitudes);
+            Assert.assertEquals(test.get("answer").getAsInt(), tree.firstUnvisited(test.get("lat").getAsDouble(),
+                    test.get("lng").getAsDouble(), test.get("prox").getAsInt(), path));
+        }
+
+        DegreeGame game = new DegreeGame();
+        TargetKdTree tree = new TargetKdTree(game.latitudes, game.longitudes);
+        for (int q = 0; q < DegreeGame.QUERIES; q++) {
+            int expected = game.scanCandidate(q);
+            Assert.assertEquals(expected, TargetVisitChecker.getVisitCandidate(game.latitudes,
+                    game.longitudes, game.path, game.queryLatitudes[q], game.queryLongitudes[q], DegreeGame.RANGE));
+            Assert.assertEquals(expected, TargetVisitChecker.getVisitCandidate(tree, game.path,
+                    game.queryLatitudes[q], game.queryLongitudes[q], DegreeGame.RANGE));
+        }
+
+        // one tree queried from several threads at once gives the same answers
+        int[] expected = IntStream.range(0, DegreeGame.QUERIES).map(game::scanCandidate).toArray();
+        for (int round = 0; round < 20; round++) {
+            Assert.assertArrayEquals(expected, IntStream.range(0, DegreeGame.QUERIES).parallel()
+                    .map(q -> tree.firstUnvisited(game.queryLatitudes[q], game.queryLongitudes[q],
+                            DegreeGame.RANGE, game.path)).toArray());
+        }
+    }
+
+    @Test
+    public void testBatchVisitChecker() {
+        RecordedGame game = new RecordedGame();
+        int[] expectedCandidates = new int[RecordedGame.QUERIES];
+        boolean[] expectedClaimable = new boolean[RecordedGame.QUERIES];
+        for (int q = 0; q < RecordedGame.QUERIES; q++) {
+            int[] path = game.paths[game.players[q]];
+            expectedCandidates[q] = TargetVisitChecker.getVisitCandidate(game.latitudes, game.longitudes, path,
+                    game.queryLatitudes[q], game.queryLongitudes[q], RecordedGame.RANGE);
+            expectedClaimable[q] = expectedCandidates[q] >= 0 && TargetVisitChecker.checkSnakeRule(game.latitudes,
+                    game.longitudes, path, expectedCandidates[q]);
+        }
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        BatchVisitChecker[] checkers = {
+            new BatchVisitChecker(game.latitudes, game.longitudes, RecordedGame.RANGE, singleThread),
+            new BatchVisitChecker(game.latitudes, game.longitudes, RecordedGame.RANGE)
+        };
+        for (BatchVisitChecker checker : checkers) {
+            int[] candidates = new int[RecordedGame.QUERIES];
+            boolean[] claimable = new boolean[RecordedGame.QUERIES];
+            checker.evaluate(game.paths, game.players, game.queryLatitudes, game.queryLongitudes,
+                    candidates, claimable);
+            Assert.assertArrayEquals(expectedCandidates, candidates);
+            Assert.assertTrue(Arrays.equals(expectedClaimable, claimable));
+        }
+        singleThread.shutdown();
+    }
+
+}
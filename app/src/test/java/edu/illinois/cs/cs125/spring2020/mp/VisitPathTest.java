@@ -0,0 +1,103 @@
+package edu.illinois.cs.cs125.spring2020.mp;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import edu.illinois.cs.cs125.spring2020.mp.logic.SegmentSet;
+import edu.illinois.cs.cs125.spring2020.mp.logic.TargetVisitChecker;
+import edu.illinois.cs.cs125.spring2020.mp.logic.VisitPath;
+
+/**
+ * Checks visit paths and the snake rule on them against the array versions in TargetVisitChecker.
+ */
+public class VisitPathTest {
+
+    @Test
+    public void testVisitPath() {
+        for (JsonObject test : JsonResourceLoader.loadArray("snakerule")) {
+            double[] latitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lats"));
+            double[] longitudes = JsonResourceLoader.getDoubleArray(test.getAsJsonArray("lngs"));
+            int[] path = JsonResourceLoader.getIntArray(test.getAsJsonArray("path"));
+            int tryVisit = test.get("try").getAsInt();
+            Assert.assertEquals(test.get("answer").getAsBoolean(),
+                    TargetVisitChecker.checkSnakeRule(latitudes, longitudes, VisitPath.fromArray(path), tryVisit));
+        }
+
+        Random random = new Random(125);
+        for (int run = 0; run < 1000; run++) {
+            int targets = 1 + random.nextInt(40);
+            int[] path = new int[targets];
+            Arrays.fill(path, -1);
+            VisitPath visitPath = new VisitPath(targets);
+            Assert.assertEquals(-1, visitPath.last());
+            int captures = random.nextInt(targets + 1);
+            for (int i = 0; i < captures; i++) {
+                int target;
+                do {
+                    target = random.nextInt(targets);
+                } while (visitPath.isVisited(target));
+                Assert.assertEquals(TargetVisitChecker.visitTarget(path, target), visitPath.visit(target));
+                Assert.assertEquals(target, visitPath.last());
+            }
+            Assert.assertEquals(captures, VisitPath.length(path));
+            Assert.assertEquals(captures, visitPath.size());
+            VisitPath copy = VisitPath.fromArray(path);
+            for (int i = 0; i < targets; i++) {
+                Assert.assertEquals(TargetVisitChecker.isTargetVisited(path, i), visitPath.isVisited(i));
+                Assert.assertEquals(visitPath.isVisited(i), copy.isVisited(i));
+            }
+            for (int i = 0; i < captures; i++) {
+                Assert.assertEquals(path[i], copy.get(i));
+            }
+            if (captures == targets) {
+                Assert.assertEquals(-1, visitPath.visit(0));
+                Assert.assertEquals(-1, TargetVisitChecker.visitTarget(path, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalSnakeRule() {
+        // Grow paths one target at a time, keeping their lines in a SegmentSet as TargetGame does with its grid
+        Random random = new Random(125);
+        for (int run = 0; run < 200; run++) {
+            int targets = 2 + random.nextInt(40);
+            double[] latitudes = new double[targets];
+            double[] longitudes = new double[targets];
+            for (int i = 0; i < targets; i++) {
+                // a coarse grid makes touching and collinear lines common
+                latitudes[i] = 40.1 + random.nextInt(6) * 0.001;
+                longitudes[i] = -88.23 + random.nextInt(6) * 0.001;
+            }
+            int[] path = new int[targets];
+            Arrays.fill(path, -1);
+            SegmentSet lines = new SegmentSet();
+            int last = -1;
+            for (int attempt = 0; attempt < targets * 2; attempt++) {
+                int target = random.nextInt(targets);
+                if (TargetVisitChecker.isTargetVisited(path, target)) {
+                    continue;
+                }
+                boolean allowed = TargetVisitChecker.checkSnakeRule(latitudes, longitudes, path, target);
+                if (last >= 0) {
+                    // the path's last line only touches the new one, so it can stay in the set
+                    Assert.assertEquals(allowed, TargetVisitChecker.checkSnakeRule(lines,
+                            latitudes[last], longitudes[last], latitudes[target], longitudes[target]));
+                }
+                if (allowed) {
+                    TargetVisitChecker.visitTarget(path, target);
+                    if (last >= 0) {
+                        lines.add(latitudes[last], longitudes[last], latitudes[target], longitudes[target]);
+                    }
+                    last = target;
+                }
+            }
+        }
+    }
+
+}